@@ -0,0 +1,51 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.worldgen.structure.SyntheticTerrain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 樱花林区域检查的基准测试
+ * 生物群系来自合成地形，只衡量检查点的遍历和提前退出，不包含真实世界中的生物群系采样
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeValidatorBenchmark {
+
+    // 候选区块在边长为 CANDIDATE_SIDE 的网格上循环
+    private static final int CANDIDATE_SIDE = 256;
+
+    /** 樱花林地块所占的百分比 */
+    @Param({"10", "50", "100"})
+    public int cherryPercent;
+
+    private final BiomeValidator validator = new BiomeValidator();
+    private BiomeValidator.CherryGroveSource source;
+    private int next;
+
+    @Setup
+    public void setup() {
+        source = new SyntheticTerrain(42L, cherryPercent)::isCherryGrove;
+    }
+
+    @Benchmark
+    public boolean validateRegion() {
+        int index = next++ & (CANDIDATE_SIDE * CANDIDATE_SIDE - 1);
+        return validator.validateCherryGroveRegion(source, index % CANDIDATE_SIDE, index / CANDIDATE_SIDE);
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 搜索缓存的基准测试
+ * 缓存预先填入 entries 条结果，搜索中心按搜索区域排成正方形网格，查询位置随机分布在网格范围内
+ * 使用固定的时间戳，测试期间不会有条目过期
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchCacheManagerBenchmark {
+
+    private static final ResourceKey<Level> DIMENSION = ResourceKey.create(Registries.DIMENSION,
+        ResourceLocation.fromNamespaceAndPath("touhou_little_maid_spell", "benchmark"));
+    private static final int POSITIONS = 1024;
+
+    /** 缓存中的条目数量 */
+    @Param({"64", "1024", "4096"})
+    public int entries;
+
+    private SearchCacheManager cacheManager;
+    private BlockPos[] centers;
+    private BlockPos[] queries;
+    private BlockPos structurePos;
+    private long now;
+    private int next;
+
+    @Setup
+    public void setup() {
+        cacheManager = new SearchCacheManager();
+        now = System.currentTimeMillis();
+        structurePos = new BlockPos(0, SearchConfig.DEFAULT_STRUCTURE_Y, 0);
+
+        int side = (int) Math.ceil(Math.sqrt(entries));
+        int half = SearchConfig.SEARCH_REGION_SIZE / 2;
+        centers = new BlockPos[entries];
+        for (int i = 0; i < entries; i++) {
+            centers[i] = new BlockPos((i % side) * SearchConfig.SEARCH_REGION_SIZE + half, 64,
+                (i / side) * SearchConfig.SEARCH_REGION_SIZE + half);
+            cacheManager.updateCache(DIMENSION, centers[i], (i & 1) == 0 ? structurePos : null, now);
+        }
+
+        Random random = new Random(42L);
+        int extent = side * SearchConfig.SEARCH_REGION_SIZE;
+        queries = new BlockPos[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            queries[i] = new BlockPos(random.nextInt(extent), 64, random.nextInt(extent));
+        }
+    }
+
+    @Benchmark
+    public SearchCacheManager.CacheCheckResult lookup() {
+        return cacheManager.checkCache(DIMENSION, queries[next++ & (POSITIONS - 1)], now);
+    }
+
+    /**
+     * 写入已有区域，替换旧结果，缓存大小保持不变
+     */
+    @Benchmark
+    public void insert() {
+        cacheManager.updateCache(DIMENSION, centers[Integer.remainderUnsigned(next++, entries)], structurePos, now);
+    }
+}
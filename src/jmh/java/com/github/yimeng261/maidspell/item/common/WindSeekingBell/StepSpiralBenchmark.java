@@ -0,0 +1,44 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步进螺旋遍历的基准测试
+ * 按 searchSectorComplete 的步进搜索方式枚举矩形内的全部候选区块，不做生物群系检查，只衡量游标本身
+ * 边长为 SPLIT_THRESHOLD 时对应单个子任务，为 SECTOR_SIZE 时对应整个小方格
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepSpiralBenchmark {
+
+    /** 矩形边长（区块） */
+    @Param({"" + SearchConfig.SPLIT_THRESHOLD, "" + SearchConfig.SECTOR_SIZE})
+    public int size;
+
+    @Benchmark
+    public long iterate() {
+        // 与搜索一致，以矩形中心为锚点
+        StepSpiral spiral = new StepSpiral(0, size - 1, 0, size - 1, SearchConfig.SEARCH_STEP,
+            (size - 1) / 2, (size - 1) / 2);
+        long checksum = 0;
+        while (spiral.next()) {
+            checksum += spiral.x() * 31L + spiral.z();
+        }
+        return checksum;
+    }
+}
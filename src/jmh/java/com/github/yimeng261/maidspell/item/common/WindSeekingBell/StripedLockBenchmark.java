@@ -0,0 +1,56 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分段锁的基准测试
+ * 同一世界的所有结构检查共用一个锁段，这里所有线程都传入同一个世界（null，映射到第0段），
+ * 比较单线程和多线程争用同一锁段时每次加锁执行的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedLockBenchmark {
+
+    /** 持有锁期间消耗的CPU工作量（JMH令牌数） */
+    @Param({"0", "100"})
+    public long work;
+
+    private final StripedLock lock = new StripedLock(SearchConfig.LOCK_STRIPE_COUNT);
+    private long counter;
+
+    @Benchmark
+    @Threads(1)
+    public long uncontended() {
+        return lockedIncrement();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long contended() {
+        return lockedIncrement();
+    }
+
+    private long lockedIncrement() {
+        return lock.executeWithLock(null, () -> {
+            Blackhole.consumeCPU(work);
+            return ++counter;
+        });
+    }
+}
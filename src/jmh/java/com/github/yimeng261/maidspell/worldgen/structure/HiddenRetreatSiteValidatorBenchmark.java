@@ -0,0 +1,50 @@
+package com.github.yimeng261.maidspell.worldgen.structure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 隐世之境生成位置检查的基准测试
+ * 与 HiddenRetreatStructure.isValidGenerationLocation 执行相同的检查，地形数据来自合成地形，
+ * 因此只衡量检查本身的开销，不包含真实世界中的地形噪声计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HiddenRetreatSiteValidatorBenchmark {
+
+    // 候选起始区块在边长为 CANDIDATE_SIDE 的网格上循环
+    private static final int CANDIDATE_SIDE = 256;
+
+    /** 樱花林地块所占的百分比，100时每个候选都进入高度采样阶段 */
+    @Param({"10", "100"})
+    public int cherryPercent;
+
+    private SyntheticTerrain terrain;
+    private int next;
+
+    @Setup
+    public void setup() {
+        terrain = new SyntheticTerrain(42L, cherryPercent);
+    }
+
+    @Benchmark
+    public HiddenRetreatSiteValidator.SiteCheck check() {
+        int index = next++ & (CANDIDATE_SIDE * CANDIDATE_SIDE - 1);
+        return HiddenRetreatSiteValidator.check(terrain, index % CANDIDATE_SIDE, index / CANDIDATE_SIDE);
+    }
+}
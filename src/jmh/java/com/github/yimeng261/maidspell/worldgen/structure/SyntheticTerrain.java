@@ -0,0 +1,49 @@
+package com.github.yimeng261.maidspell.worldgen.structure;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * 确定性的合成地形
+ * 基准测试不启动Minecraft世界，生物群系和地面高度由区块坐标的哈希值生成，同一坐标总是得到相同的结果
+ *
+ * 地形形态：
+ * - 以8×8区块为一个地块，每个地块按哈希值决定是否为樱花林，樱花林地块连成片，与真实世界的分布相似
+ * - 每个地块有自己的基准高度，其中一部分地块起伏较大，用于覆盖方差检查提前放弃的路径
+ */
+public final class SyntheticTerrain implements HiddenRetreatSiteValidator.TerrainSource {
+
+    private static final int PATCH_SHIFT = 3;
+
+    private final long seed;
+    private final int cherryPercent;
+
+    /**
+     * @param seed 地形种子
+     * @param cherryPercent 樱花林地块所占的百分比
+     */
+    public SyntheticTerrain(long seed, int cherryPercent) {
+        this.seed = seed;
+        this.cherryPercent = cherryPercent;
+    }
+
+    @Override
+    public boolean isCherryGrove(int chunkX, int chunkZ) {
+        long patch = hash(ChunkPos.asLong(chunkX >> PATCH_SHIFT, chunkZ >> PATCH_SHIFT));
+        return Math.floorMod(patch, 100) < cherryPercent;
+    }
+
+    @Override
+    public int sampleHeight(int chunkX, int chunkZ, int index) {
+        long patch = hash(ChunkPos.asLong(chunkX >> PATCH_SHIFT, chunkZ >> PATCH_SHIFT) ^ 0x5DEECE66DL);
+        int base = 80 + (int) Math.floorMod(patch, 40);
+        // 四分之一的地块起伏较大
+        int amplitude = (patch & 3) == 0 ? 24 : 6;
+        long sample = hash(ChunkPos.asLong(chunkX, chunkZ) * 31 + index);
+        return base + (int) Math.floorMod(sample, amplitude) - amplitude / 2;
+    }
+
+    private long hash(long value) {
+        return HashCommon.mix(value ^ seed);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.yimeng261.maidspell;
 
+import com.github.yimeng261.maidspell.item.common.WindSeekingBell.StructureVerifier;
 import com.github.yimeng261.maidspell.spell.SimplifiedSpellCaster;
 import com.github.yimeng261.maidspell.task.SpellCombatFarTask;
 import com.github.yimeng261.maidspell.task.SpellCombatMeleeTask;
@@ -328,6 +329,38 @@ public class Config {
         BUILDER.pop(); // baubles
     }
 
+
+    // ========== 寻风之铃配置 ==========
+    static {
+        BUILDER.comment("寻风之铃结构搜索相关配置")
+               .comment("Wind Seeking Bell structure search configurations")
+               .push("windSeekingBell");
+    }
+
+    private static final ModConfigSpec.EnumValue<StructureVerifier.Backend> STRUCTURE_VERIFICATION_BACKEND = BUILDER
+            .comment("结构验证后端 (默认: CONFINED)")
+            .comment("LOCKED: 经由共享的StructureCheck验证，同一世界的验证串行执行")
+            .comment("CONFINED: 每个搜索线程独立评估结构起始，无需加锁，可充分利用多核")
+            .comment("MAIN_THREAD: 搜索线程只做筛选，验证在服务器主线程按每tick时间预算执行，严格线程安全")
+            .comment("Structure verification backend (default: CONFINED)")
+            .comment("LOCKED: verify through the shared StructureCheck, serialized per level")
+            .comment("CONFINED: each search thread evaluates structure starts independently, lock-free")
+            .comment("MAIN_THREAD: search threads only filter candidates, the server thread verifies them within a per-tick budget")
+            .defineEnum("structureVerificationBackend", StructureVerifier.Backend.CONFINED);
+
+    static {
+        BUILDER.comment("");
+    }
+
+    private static final ModConfigSpec.DoubleValue MAIN_THREAD_VERIFICATION_BUDGET_MS = BUILDER
+            .comment("MAIN_THREAD后端每tick用于结构验证的时间预算（毫秒） (默认: 2.0)")
+            .comment("Per-tick time budget in milliseconds for structure verification with the MAIN_THREAD backend (default: 2.0)")
+            .defineInRange("mainThreadVerificationBudgetMs", 2.0, 0.1, 50.0);
+
+    static {
+        BUILDER.pop(); // windSeekingBell
+    }
+
     public static final ModConfigSpec SPEC = BUILDER.build();
 
     // 缓存的配置值
@@ -379,6 +412,10 @@ public class Config {
     public static double soulBookDamageThresholdPercent;
     public static int soulBookDamageIntervalThreshold;
 
+    // 寻风之铃相关
+    public static StructureVerifier.Backend structureVerificationBackend = StructureVerifier.Backend.CONFINED;
+    public static double mainThreadVerificationBudgetMs = 2.0;
+
 
     @SubscribeEvent
     static void onLoad(final ModConfigEvent.Loading event) {
@@ -431,6 +468,10 @@ public class Config {
         soulBookDamageThresholdPercent = SOUL_BOOK_DAMAGE_THRESHOLD_PERCENT.get();
         soulBookDamageIntervalThreshold = SOUL_BOOK_DAMAGE_INTERVAL_THRESHOLD.get();
 
+        // 寻风之铃相关
+        structureVerificationBackend = STRUCTURE_VERIFICATION_BACKEND.get();
+        mainThreadVerificationBudgetMs = MAIN_THREAD_VERIFICATION_BUDGET_MS.get();
+
         SpellCombatMeleeTask.setSpellRange((float) maxSpellRange);
         SpellCombatFarTask.setSpellRange((float) maxSpellRange);
         SimplifiedSpellCaster.MELEE_RANGE= (float) meleeRange;
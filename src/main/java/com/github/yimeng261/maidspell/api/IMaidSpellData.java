@@ -5,6 +5,7 @@ import com.github.yimeng261.maidspell.Global;
 import com.github.yimeng261.maidspell.item.MaidSpellItems;
 import com.github.yimeng261.maidspell.spell.manager.BaubleStateManager;
 import com.mojang.logging.LogUtils;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.ItemStack;
 import org.slf4j.Logger;
@@ -31,11 +32,6 @@ public abstract class IMaidSpellData {
         this.target = target;
     }
 
-    public static IMaidSpellData getOrCreate(UUID maidUUID){
-        Global.LOGGER.error("should complete getOrCreate method");
-        return null;
-    }
-
     /**
      * 获取第一本法术书（兼容旧代码）
      * @return 返回第一本法术书，如果没有则返回 ItemStack.EMPTY
@@ -153,6 +149,32 @@ public abstract class IMaidSpellData {
         return spellCooldowns.getOrDefault(spellId, 0);
     }
 
+    /**
+     * 保存剩余的法术冷却，随女仆实体一起写入NBT
+     * @return 法术ID到剩余冷却（tick）的映射
+     */
+    public CompoundTag saveCooldowns() {
+        CompoundTag tag = new CompoundTag();
+        spellCooldowns.forEach((spellId, cooldown) -> {
+            if (cooldown > 0) {
+                tag.putInt(spellId, cooldown);
+            }
+        });
+        return tag;
+    }
+
+    /**
+     * 恢复 saveCooldowns 保存的法术冷却
+     */
+    public void loadCooldowns(CompoundTag tag) {
+        for (String spellId : tag.getAllKeys()) {
+            int cooldown = tag.getInt(spellId);
+            if (cooldown > 0) {
+                spellCooldowns.put(spellId, cooldown);
+            }
+        }
+    }
+
     /**
      * 更新所有法术的冷却时间(每秒一次)
      */
@@ -1,13 +1,14 @@
 package com.github.yimeng261.maidspell.api;
 
 import com.github.tartaricacid.touhoulittlemaid.entity.passive.EntityMaid;
+import com.github.yimeng261.maidspell.api.entity.SpellContextEntityMaid;
+import com.github.yimeng261.maidspell.spell.manager.MaidSpellContext;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.ItemStack;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 法术书提供者抽象类
@@ -19,25 +20,40 @@ import java.util.function.Function;
 public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
 
     /**
-     * 数据工厂方法，用于获取或创建指定女仆的法术数据
+     * 数据工厂方法，用于为女仆创建新的法术数据
      */
-    protected final Function<UUID, T> dataFactory;
+    protected final Supplier<T> dataFactory;
 
     /**
      * 法术类的Class对象，用于类型识别
      */
     protected final Class<S> spellClass;
 
+    /**
+     * 提供者槽位，即在 SpellBookManager 中的下标，也是数据在女仆法术上下文中的位置
+     */
+    private int slot = -1;
+
     /**
      * 构造函数
-     * @param dataFactory 数据工厂方法，根据女仆UUID获取或创建对应的法术数据
+     * @param dataFactory 数据工厂方法，创建一份空的法术数据
      * @param spellClass 法术类的Class对象
      */
-    protected ISpellBookProvider(Function<UUID, T> dataFactory, Class<S> spellClass) {
+    protected ISpellBookProvider(Supplier<T> dataFactory, Class<S> spellClass) {
         this.dataFactory = dataFactory;
         this.spellClass = spellClass;
     }
 
+    /**
+     * 绑定提供者槽位，只在 SpellBookManager 冻结提供者列表时调用一次
+     */
+    public final void bindSlot(int slot) {
+        if (this.slot != -1) {
+            throw new IllegalStateException("Spell book provider slot already bound: " + this.slot);
+        }
+        this.slot = slot;
+    }
+
     /**
      * 从所有可用的法术书中收集法术
      * @param maid 女仆实体
@@ -60,19 +76,40 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
     protected abstract List<S> collectSpellFromSingleSpellBook(ItemStack spellBook, EntityMaid maid);
 
     /**
-     * 获取指定女仆的法术数据
+     * 获取或创建指定女仆的法术数据
      * @param maid 女仆实体
      * @return 对应的法术数据，如果女仆为null则返回null
      */
+    @SuppressWarnings("unchecked")
     protected T getData(EntityMaid maid) {
         if (maid == null) {
             return null;
         }
-        return dataFactory.apply(maid.getUUID());
+        MaidSpellContext context = SpellContextEntityMaid.getSpellContext(maid);
+        T data = (T) context.getData(slot);
+        if (data == null) {
+            data = dataFactory.get();
+            context.setData(slot, data);
+        }
+        return data;
+    }
+
+    /**
+     * 获取指定女仆已有的法术数据，不会创建新数据
+     * @param maid 女仆实体
+     * @return 对应的法术数据，尚未创建或女仆为null时返回null
+     */
+    @SuppressWarnings("unchecked")
+    protected T peekData(EntityMaid maid) {
+        if (maid == null) {
+            return null;
+        }
+        return (T) SpellContextEntityMaid.getSpellContext(maid).getData(slot);
     }
 
     /**
      * 处理物品堆栈，用于初始化或更新法术书
+     * 只有添加该模组的法术书时才会创建法术数据
      */
     public void handleItemStack(EntityMaid maid, ItemStack spellBook, boolean isAddOperation) {
         if(maid.level().isClientSide){
@@ -83,7 +120,10 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
                 getData(maid).addSpellBook(spellBook,maid);
             }
         }else{
-            getData(maid).removeSpellBook(spellBook);
+            T data = peekData(maid);
+            if (data != null) {
+                data.removeSpellBook(spellBook);
+            }
         }
 
     }
@@ -92,10 +132,22 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
      * 清除女仆的法术物品数据
      */
     public void clearSpellItems(EntityMaid maid) {
-        getData(maid).clearSpellBooks();
+        T data = peekData(maid);
+        if (data == null) {
+            return;
+        }
+        data.clearSpellBooks();
         stopCasting(maid);
     }
 
+    /**
+     * 检查女仆是否持有该模组的法术书
+     */
+    public boolean hasSpellBooks(EntityMaid maid) {
+        T data = peekData(maid);
+        return data != null && !data.getSpellBooks().isEmpty();
+    }
+
     /**
      * 检查物品是否为该模组的法术书
      */
@@ -105,8 +157,8 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
      * 执行法术施放
      */
     public void castSpell(EntityMaid entityMaid){
-        IMaidSpellData spellData = getData(entityMaid);
-        if(spellData.getSpellBooks().isEmpty() || spellData.isCasting()){
+        IMaidSpellData spellData = peekData(entityMaid);
+        if(spellData == null || spellData.getSpellBooks().isEmpty() || spellData.isCasting()){
             return;
         }
         initiateCasting(entityMaid);
@@ -116,14 +168,17 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
      * 更新法术冷却：每次一秒
      */
     public void updateCooldown(EntityMaid maid){
-        getData(maid).updateCooldowns();
+        T data = peekData(maid);
+        if (data != null) {
+            data.updateCooldowns();
+        }
     }
 
     /**
-     * 设置当前目标
+     * 设置当前目标，尚未持有过该模组法术书的女仆没有数据，不需要目标
      */
     public void setTarget(EntityMaid maid, LivingEntity target) {
-        T data = getData(maid);
+        T data = peekData(maid);
         if (data != null) {
             data.setTarget(target);
         }
@@ -133,7 +188,7 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
      * 获取当前目标
      */
     public LivingEntity getTarget(EntityMaid maid) {
-        T data = getData(maid);
+        T data = peekData(maid);
         return data != null ? data.getTarget() : null;
     }
 
@@ -142,7 +197,7 @@ public abstract class ISpellBookProvider<T extends IMaidSpellData, S> {
      * 检查是否正在施法
      */
     public boolean isCasting(EntityMaid maid) {
-        T data = getData(maid);
+        T data = peekData(maid);
         return data != null && data.isCasting();
     }
 
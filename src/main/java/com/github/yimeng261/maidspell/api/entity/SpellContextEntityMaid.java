@@ -0,0 +1,16 @@
+package com.github.yimeng261.maidspell.api.entity;
+
+import com.github.tartaricacid.touhoulittlemaid.entity.passive.EntityMaid;
+import com.github.yimeng261.maidspell.spell.manager.MaidSpellContext;
+
+/**
+ * 用于获取挂在女仆实体上的法术上下文
+ */
+public interface SpellContextEntityMaid {
+    MaidSpellContext maidSpell$getSpellContext();
+
+    static MaidSpellContext getSpellContext(EntityMaid maid) {
+        SpellContextEntityMaid spellContextEntityMaid = (SpellContextEntityMaid) maid;
+        return spellContextEntityMaid.maidSpell$getSpellContext();
+    }
+}
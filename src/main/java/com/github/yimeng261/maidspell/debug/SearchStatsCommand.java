@@ -0,0 +1,44 @@
+package com.github.yimeng261.maidspell.debug;
+
+import com.github.yimeng261.maidspell.item.common.WindSeekingBell.SearchMetrics;
+import com.mojang.brigadier.CommandDispatcher;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+
+/**
+ * 寻风之铃搜索统计命令
+ * 用于查看和清空结构搜索的统计数据
+ */
+@EventBusSubscriber
+public class SearchStatsCommand {
+
+    @SubscribeEvent
+    public static void registerCommands(RegisterCommandsEvent event) {
+        CommandDispatcher<CommandSourceStack> dispatcher = event.getDispatcher();
+
+        // 权限放在子命令上：各命令共用 maidspell 根节点，根节点的权限只取决于先注册的命令
+        dispatcher.register(Commands.literal("maidspell")
+            .then(Commands.literal("searchstats")
+                .requires(source -> source.hasPermission(2)) // 需要OP权限
+                .executes(context -> {
+                    // 分行发送统计，避免单条消息过长
+                    for (String line : SearchMetrics.INSTANCE.report()) {
+                        context.getSource().sendSuccess(() -> Component.literal(line), false);
+                    }
+                    return 1;
+                })
+                .then(Commands.literal("reset")
+                    .executes(context -> {
+                        SearchMetrics.INSTANCE.reset();
+                        context.getSource().sendSuccess(() -> Component.literal("搜索统计已清空"), true);
+                        return 1;
+                    })
+                )
+            )
+        );
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.yimeng261.maidspell.debug;
+
+import com.github.yimeng261.maidspell.item.common.WindSeekingBell.SearchConfig;
+import com.github.yimeng261.maidspell.item.common.WindSeekingBell.WindSeekingBell;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * 隐世之境预计算命令
+ * 在专用服务器上预先遍历主世界出生点附近的所有隐世之境，写入预计算索引文件，寻风之铃直接从文件查询
+ */
+@EventBusSubscriber
+public class StructurePrecomputeCommand {
+
+    @SubscribeEvent
+    public static void registerCommands(RegisterCommandsEvent event) {
+        CommandDispatcher<CommandSourceStack> dispatcher = event.getDispatcher();
+
+        dispatcher.register(Commands.literal("maidspell")
+            .then(Commands.literal("precompute")
+                .requires(source -> source.hasPermission(4)) // 遍历开销很大，只允许服务器管理员执行
+                .then(Commands.argument("radius", IntegerArgumentType.integer(1, SearchConfig.MAX_SEARCH_RADIUS))
+                    .executes(context -> {
+                        CommandSourceStack source = context.getSource();
+                        int radius = IntegerArgumentType.getInteger(context, "radius");
+                        ServerLevel overworld = source.getServer().overworld();
+
+                        source.sendSuccess(() -> Component.literal(
+                            String.format("开始预计算出生点周围 %d 区块内的隐世之境", radius)), true);
+                        WindSeekingBell.getSearchEngine().precompute(overworld, radius)
+                            .whenComplete((count, throwable) -> source.getServer().execute(() -> {
+                                if (throwable == null) {
+                                    source.sendSuccess(() -> Component.literal(
+                                        String.format("预计算完成，共写入 %d 个隐世之境", count)), true);
+                                    return;
+                                }
+                                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                    ? throwable.getCause() : throwable;
+                                source.sendFailure(Component.literal("预计算失败: " + cause.getMessage()));
+                            }));
+                        return 1;
+                    })
+                )
+            )
+        );
+    }
+}
@@ -336,7 +336,7 @@ public class MaidSpellEventHandler {
                 }
             }
             // MaidSlashBladeData.remove(maid.getUUID());
-            SpellBookManager.removeManager(maid);
+            // 管理器和法术数据保存在女仆实体的法术上下文中，随实体一起回收，无需手动移除
         } catch (Exception e) {
             // 静默处理清理错误，避免影响游戏正常运行
         }
@@ -0,0 +1,202 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.Holder;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.QuartPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Biomes;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 生物群系分类缓存
+ * 以世界种子、维度和区块为键，记录区块中心是否为樱花林
+ *
+ * 工作原理：
+ * - 生物群系在给定种子下是确定的，采样一次即可永久复用，按世界以SavedData持久化
+ * - 每新增 BIOME_CACHE_SAVE_BATCH 次采样才标记一次待保存，避免每次自动保存都序列化整个缓存；
+ *   服务器停止前补标不足一批的新采样，关服时不会丢失
+ * - 区块按 TILE_CHUNKS×TILE_CHUNKS 分块，每块用两个位图分别记录"已采样"和"是樱花林"
+ * - 位图使用AtomicLongArray，读写无锁，多个搜索线程可并发填充
+ * - 直接采样生物群系源（与结构生成时的判定一致），不经过已加载区块
+ * - 分块总数超过 MAX_BIOME_CACHE_TILES 后不再新增分块，超出部分直接采样
+ */
+public class BiomeClassificationCache extends SavedData {
+
+    private static final String DATA_NAME = "touhou_little_maid_spell_biome_cache";
+
+    /** 每个分块的边长（区块）为 2^TILE_SHIFT */
+    private static final int TILE_SHIFT = 5;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final int WORDS_PER_TILE = (1 << (TILE_SHIFT * 2)) / Long.SIZE;
+
+    // 本次服务器运行中获取过的缓存，停止前统一补标待保存
+    private static final Set<BiomeClassificationCache> LOADED = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, Tile> tiles = new ConcurrentHashMap<>();
+    private volatile long seed;
+
+    // 上次保存后新增的采样数
+    private final AtomicInteger unsavedSamples = new AtomicInteger();
+
+    /**
+     * 分块：两个位图分别记录已采样区块和樱花林区块
+     */
+    private static final class Tile {
+        final AtomicLongArray sampled = new AtomicLongArray(WORDS_PER_TILE);
+        final AtomicLongArray cherry = new AtomicLongArray(WORDS_PER_TILE);
+    }
+
+    private BiomeClassificationCache() {
+    }
+
+    /**
+     * 获取世界的生物群系分类缓存，必须在服务器主线程调用
+     * @param level 服务器世界
+     * @return 与当前世界种子匹配的缓存
+     */
+    public static BiomeClassificationCache get(ServerLevel level) {
+        BiomeClassificationCache cache = level.getDataStorage().computeIfAbsent(
+            new SavedData.Factory<>(BiomeClassificationCache::new, BiomeClassificationCache::load, null), DATA_NAME);
+        if (cache.seed != level.getSeed()) {
+            cache.tiles.clear();
+            cache.seed = level.getSeed();
+            cache.setDirty();
+        }
+        LOADED.add(cache);
+        return cache;
+    }
+
+    /**
+     * 为仍有未保存采样的缓存标记待保存，在服务器停止、最后一次保存之前调用
+     */
+    public static void flushAll() {
+        for (BiomeClassificationCache cache : LOADED) {
+            if (cache.unsavedSamples.get() > 0) {
+                cache.setDirty();
+            }
+        }
+    }
+
+    /**
+     * 释放对本次服务器运行中缓存的引用，服务器停止后调用
+     */
+    public static void clearAll() {
+        LOADED.clear();
+    }
+
+    /**
+     * 检查区块中心是否为樱花林，优先读取缓存
+     * @param level 服务器世界
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 如果是樱花林返回true
+     */
+    public boolean isCherryGrove(ServerLevel level, int chunkX, int chunkZ) {
+        SearchMetrics.INSTANCE.biomeLookups.increment();
+        long tileKey = ChunkPos.asLong(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT);
+        Tile tile = tiles.get(tileKey);
+        if (tile == null) {
+            if (tiles.size() >= SearchConfig.MAX_BIOME_CACHE_TILES) {
+                return sampleCherryGrove(level, chunkX, chunkZ);
+            }
+            tile = tiles.computeIfAbsent(tileKey, key -> new Tile());
+        }
+
+        int local = (chunkX & TILE_MASK) | ((chunkZ & TILE_MASK) << TILE_SHIFT);
+        int word = local >>> 6;
+        long bit = 1L << local;
+        if ((tile.sampled.get(word) & bit) != 0) {
+            SearchMetrics.INSTANCE.biomeCacheHits.increment();
+            return (tile.cherry.get(word) & bit) != 0;
+        }
+
+        boolean cherry = sampleCherryGrove(level, chunkX, chunkZ);
+        // 先写樱花林位再写已采样位，读到已采样位的线程一定能看到正确的分类
+        if (cherry) {
+            tile.cherry.getAndAccumulate(word, bit, (a, b) -> a | b);
+        }
+        tile.sampled.getAndAccumulate(word, bit, (a, b) -> a | b);
+        if (unsavedSamples.incrementAndGet() % SearchConfig.BIOME_CACHE_SAVE_BATCH == 0) {
+            setDirty();
+        }
+        return cherry;
+    }
+
+    /**
+     * 直接从生物群系源采样区块中心（海平面高度）的生物群系
+     * 与HiddenRetreatStructure生成时的判定方式一致
+     */
+    public static boolean sampleCherryGrove(ServerLevel level, int chunkX, int chunkZ) {
+        try {
+            int x = (chunkX << 4) + SearchConfig.CHUNK_CENTER_OFFSET;
+            int z = (chunkZ << 4) + SearchConfig.CHUNK_CENTER_OFFSET;
+            int y = level.getSeaLevel();
+
+            Holder<Biome> biome = level.getChunkSource().getGenerator().getBiomeSource().getNoiseBiome(
+                QuartPos.fromBlock(x), QuartPos.fromBlock(y), QuartPos.fromBlock(z),
+                level.getChunkSource().randomState().sampler()
+            );
+            return biome.is(Biomes.CHERRY_GROVE);
+        } catch (Exception e) {
+            // 如果出现异常，保守处理返回false
+            return false;
+        }
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider registries) {
+        // 先清零再读取位图，保存期间新增的采样计入下一批
+        unsavedSamples.set(0);
+        LongArrayList keys = new LongArrayList(tiles.size());
+        LongArrayList sampled = new LongArrayList(tiles.size() * WORDS_PER_TILE);
+        LongArrayList cherry = new LongArrayList(tiles.size() * WORDS_PER_TILE);
+
+        for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+            Tile tile = entry.getValue();
+            keys.add(entry.getKey().longValue());
+            for (int i = 0; i < WORDS_PER_TILE; i++) {
+                // 与isCherryGrove的写入顺序相反：先读已采样位，保证已采样的区块分类完整
+                sampled.add(tile.sampled.get(i));
+                cherry.add(tile.cherry.get(i));
+            }
+        }
+
+        tag.putLong("seed", seed);
+        tag.putLongArray("tiles", keys.toLongArray());
+        tag.putLongArray("sampled", sampled.toLongArray());
+        tag.putLongArray("cherry", cherry.toLongArray());
+        return tag;
+    }
+
+    private static BiomeClassificationCache load(CompoundTag tag, HolderLookup.Provider registries) {
+        BiomeClassificationCache cache = new BiomeClassificationCache();
+        cache.seed = tag.getLong("seed");
+
+        long[] keys = tag.getLongArray("tiles");
+        long[] sampled = tag.getLongArray("sampled");
+        long[] cherry = tag.getLongArray("cherry");
+        if (sampled.length != keys.length * WORDS_PER_TILE || cherry.length != sampled.length) {
+            return cache; // 数据损坏，重新采样
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            Tile tile = new Tile();
+            for (int j = 0; j < WORDS_PER_TILE; j++) {
+                tile.sampled.set(j, sampled[i * WORDS_PER_TILE + j]);
+                tile.cherry.set(j, cherry[i * WORDS_PER_TILE + j]);
+            }
+            cache.tiles.put(keys[i], tile);
+        }
+        return cache;
+    }
+}
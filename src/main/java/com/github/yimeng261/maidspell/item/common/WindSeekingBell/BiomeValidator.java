@@ -1,18 +1,35 @@
 package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
 
-import net.minecraft.core.BlockPos;
-import net.minecraft.core.Holder;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
-import net.minecraft.world.level.biome.Biome;
-import net.minecraft.world.level.biome.Biomes;
 
 /**
  * 生物群系验证器
  * 负责检查区块是否符合樱花林生物群系要求
  */
 public class BiomeValidator {
-    
+
+    private static final int R = SearchConfig.CHERRY_GROVE_CHECK_RADIUS;
+
+    /**
+     * 区块生物群系判定
+     * 世界中由分类缓存或生物群系源提供，基准测试中可由合成数据提供
+     */
+    @FunctionalInterface
+    public interface CherryGroveSource {
+        boolean isCherryGrove(int chunkX, int chunkZ);
+    }
+
+    /**
+     * 3×3区域的检查点偏移量（区块），依次为中心、四角、边中点
+     * 中心最可能失败，放在最前面以尽早排除
+     */
+    private static final int[][] CHECK_OFFSETS = {
+        {0, 0},
+        {-R, -R}, {-R, R}, {R, -R}, {R, R},
+        {-R, 0}, {R, 0}, {0, -R}, {0, R}
+    };
+
     /**
      * 检查潜在的结构中心点是否符合樱花林要求
      * 验证3×3区域的中心、四角和边中点是否都是樱花林生物群系
@@ -22,36 +39,34 @@ public class BiomeValidator {
      * @return 如果符合要求返回true，否则返回false
      */
     public boolean validateCherryGroveRegion(ServerLevel level, ChunkPos centerChunk) {
-        // 1. 首先检查中心是否为樱花林（类似Main算法检查中心格子）
-        if (!isCherryGroveChunk(level, centerChunk)) {
-            return false;
-        }
-        
-        // 2. 检查3×3区域的四个角落（类似Main算法检查四个角）
-        ChunkPos[] corners = {
-            new ChunkPos(centerChunk.x - SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z - SearchConfig.CHERRY_GROVE_CHECK_RADIUS), // 左上
-            new ChunkPos(centerChunk.x - SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z + SearchConfig.CHERRY_GROVE_CHECK_RADIUS), // 左下  
-            new ChunkPos(centerChunk.x + SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z - SearchConfig.CHERRY_GROVE_CHECK_RADIUS), // 右上
-            new ChunkPos(centerChunk.x + SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z + SearchConfig.CHERRY_GROVE_CHECK_RADIUS)  // 右下
-        };
-        
-        for (ChunkPos corner : corners) {
-            if (!isCherryGroveChunk(level, corner)) {
-                return false; // 角落不是樱花林，不符合条件
-            }
-        }
-        
-        // 3. 检查3×3区域的边中点（类似Main算法检查边中点）
-        ChunkPos[] edges = {
-            new ChunkPos(centerChunk.x - SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z), // 左边
-            new ChunkPos(centerChunk.x + SearchConfig.CHERRY_GROVE_CHECK_RADIUS, centerChunk.z), // 右边
-            new ChunkPos(centerChunk.x, centerChunk.z - SearchConfig.CHERRY_GROVE_CHECK_RADIUS), // 上边
-            new ChunkPos(centerChunk.x, centerChunk.z + SearchConfig.CHERRY_GROVE_CHECK_RADIUS)  // 下边
-        };
-        
-        for (ChunkPos edge : edges) {
-            if (!isCherryGroveChunk(level, edge)) {
-                return false; // 边中点不是樱花林，不符合条件
+        return validateCherryGroveRegion(level, null, centerChunk);
+    }
+
+    /**
+     * 检查潜在的结构中心点是否符合樱花林要求，采样结果优先从分类缓存读取
+     * 
+     * @param level 服务器世界
+     * @param cache 生物群系分类缓存，为null时直接采样
+     * @param centerChunk 中心区块
+     * @return 如果符合要求返回true，否则返回false
+     */
+    public boolean validateCherryGroveRegion(ServerLevel level, BiomeClassificationCache cache, ChunkPos centerChunk) {
+        return validateCherryGroveRegion((chunkX, chunkZ) -> isCherryGroveChunk(level, cache, chunkX, chunkZ),
+            centerChunk.x, centerChunk.z);
+    }
+
+    /**
+     * 检查潜在的结构中心点是否符合樱花林要求，生物群系判定由调用方提供
+     * 
+     * @param source 区块生物群系判定
+     * @param centerChunkX 中心区块X坐标
+     * @param centerChunkZ 中心区块Z坐标
+     * @return 如果符合要求返回true，否则返回false
+     */
+    public boolean validateCherryGroveRegion(CherryGroveSource source, int centerChunkX, int centerChunkZ) {
+        for (int[] offset : CHECK_OFFSETS) {
+            if (!source.isCherryGrove(centerChunkX + offset[0], centerChunkZ + offset[1])) {
+                return false; // 任一检查点不是樱花林，不符合条件
             }
         }
         
@@ -67,18 +82,23 @@ public class BiomeValidator {
      * @return 如果是樱花林返回true，否则返回false
      */
     public boolean isCherryGroveChunk(ServerLevel level, ChunkPos chunk) {
-        try {
-            // 只检查区块中心点的生物群系（使用预定义常量）
-            int x = chunk.getMinBlockX() + SearchConfig.CHUNK_CENTER_OFFSET;
-            int z = chunk.getMinBlockZ() + SearchConfig.CHUNK_CENTER_OFFSET;
-            int y = level.getSeaLevel();
-            
-            Holder<Biome> biome = level.getBiome(new BlockPos(x, y, z));
-            return biome.is(Biomes.CHERRY_GROVE);
-        } catch (Exception e) {
-            // 如果出现异常，保守处理返回false
-            return false;
+        return isCherryGroveChunk(level, null, chunk.x, chunk.z);
+    }
+
+    /**
+     * 检查区块中心是否为樱花林生物群系
+     * 
+     * @param level 服务器世界
+     * @param cache 生物群系分类缓存，为null时直接采样
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 如果是樱花林返回true，否则返回false
+     */
+    public boolean isCherryGroveChunk(ServerLevel level, BiomeClassificationCache cache, int chunkX, int chunkZ) {
+        if (cache != null) {
+            return cache.isCherryGrove(level, chunkX, chunkZ);
         }
+        return BiomeClassificationCache.sampleCherryGrove(level, chunkX, chunkZ);
     }
     
     /**
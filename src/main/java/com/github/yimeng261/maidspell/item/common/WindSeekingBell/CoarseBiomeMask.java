@@ -0,0 +1,121 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import java.util.BitSet;
+
+/**
+ * 粗粒度生物群系掩码
+ * 分层预扫描的第一层：以 COARSE_SCAN_STEP 为间距对小方格采样，标记可能含有樱花林的粗分块
+ *
+ * 工作原理：
+ * - 小方格被划分为 COARSE_SCAN_STEP×COARSE_SCAN_STEP 区块的粗分块
+ * - 对每个粗分块的四角和中心采样生物群系，任一采样点为樱花林即标记该分块
+ * - 标记向外膨胀 DILATION 个分块：比采样间距小的樱花林斑块只会落在某个采样点附近，
+ *   候选点的樱花林检查范围也可能跨进相邻分块，因此距樱花林采样点一个采样间距加检查半径以内的候选点都需要细化
+ * - 步进搜索时只细化被标记的粗分块，其余候选点不再进行9点检查
+ * - 相邻分块共享角点，采样次数约为粗分块数的2倍
+ */
+final class CoarseBiomeMask {
+
+    private static final int STEP = SearchConfig.COARSE_SCAN_STEP;
+
+    // 膨胀半径（分块）：覆盖距樱花林采样点 CHERRY_GROVE_CHECK_RADIUS + STEP 区块以内的所有分块
+    private static final int DILATION = (SearchConfig.CHERRY_GROVE_CHECK_RADIUS + STEP + STEP - 1) / STEP;
+
+    private final int minX;
+    private final int minZ;
+    private final int tilesX;
+    private final BitSet marked;
+
+    private CoarseBiomeMask(int minX, int minZ, int tilesX, BitSet marked) {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.tilesX = tilesX;
+        this.marked = marked;
+    }
+
+    /**
+     * 对小方格进行粗采样
+     * @param context 搜索上下文
+     * @param validator 生物群系验证器
+     * @param minX 小方格最小区块X
+     * @param maxX 小方格最大区块X
+     * @param minZ 小方格最小区块Z
+     * @param maxZ 小方格最大区块Z
+     * @param frontier 搜索边界，用于响应取消
+     * @return 粗分块掩码；已取消时返回null
+     */
+    static CoarseBiomeMask scan(SearchContext context, BiomeValidator validator,
+                                int minX, int maxX, int minZ, int maxZ, SearchFrontier frontier) {
+        int tilesX = (maxX - minX) / STEP + 1;
+        int tilesZ = (maxZ - minZ) / STEP + 1;
+
+        // 角点网格比分块网格多一行一列，逐行滚动保存上一行的角点结果
+        boolean[] upper = sampleCornerRow(context, validator, minX, minZ, tilesX);
+        BitSet marked = new BitSet(tilesX * tilesZ);
+
+        for (int tz = 0; tz < tilesZ; tz++) {
+            if (frontier.isCancelled()) {
+                return null;
+            }
+            boolean[] lower = sampleCornerRow(context, validator, minX, minZ + (tz + 1) * STEP, tilesX);
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (upper[tx] || upper[tx + 1] || lower[tx] || lower[tx + 1]
+                    || validator.isCherryGroveChunk(context.level(), context.biomeCache(),
+                           minX + tx * STEP + STEP / 2, minZ + tz * STEP + STEP / 2)) {
+                    marked.set(tz * tilesX + tx);
+                }
+            }
+            upper = lower;
+        }
+
+        return new CoarseBiomeMask(minX, minZ, tilesX, dilate(marked, tilesX, tilesZ));
+    }
+
+    /**
+     * 将标记向外膨胀 DILATION 个分块
+     */
+    private static BitSet dilate(BitSet marked, int tilesX, int tilesZ) {
+        BitSet dilated = new BitSet(tilesX * tilesZ);
+        for (int i = marked.nextSetBit(0); i >= 0; i = marked.nextSetBit(i + 1)) {
+            int tx = i % tilesX;
+            int tz = i / tilesX;
+            int fromX = Math.max(0, tx - DILATION);
+            int toX = Math.min(tilesX, tx + DILATION + 1);
+            for (int z = Math.max(0, tz - DILATION); z <= Math.min(tilesZ - 1, tz + DILATION); z++) {
+                dilated.set(z * tilesX + fromX, z * tilesX + toX);
+            }
+        }
+        return dilated;
+    }
+
+    private static boolean[] sampleCornerRow(SearchContext context, BiomeValidator validator,
+                                             int minX, int chunkZ, int tilesX) {
+        boolean[] row = new boolean[tilesX + 1];
+        for (int i = 0; i <= tilesX; i++) {
+            row[i] = validator.isCherryGroveChunk(context.level(), context.biomeCache(), minX + i * STEP, chunkZ);
+        }
+        return row;
+    }
+
+    /**
+     * 检查小方格内是否有任何粗分块被标记
+     */
+    boolean isEmpty() {
+        return marked.isEmpty();
+    }
+
+    /**
+     * 检查区块所在的粗分块是否可能含有樱花林
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 如果需要细化检查返回true
+     */
+    boolean mayContainCherryGrove(int chunkX, int chunkZ) {
+        int tx = (chunkX - minX) / STEP;
+        int tz = (chunkZ - minZ) / STEP;
+        if (chunkX < minX || chunkZ < minZ || tx >= tilesX) {
+            return true; // 不在掩码范围内，保守处理
+        }
+        return marked.get(tz * tilesX + tx);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkGenerator;
+import net.minecraft.world.level.levelgen.structure.Structure;
+
+/**
+ * 线程封闭的验证器
+ * 不经过世界共享的StructureCheck，而是像区块生成线程一样，在调用线程上为候选区块构造独立的生成上下文，
+ * 直接评估结构能否在此起始。生物群系源、噪声采样和模板管理器本身就支持多个生成线程并发访问，因此无需加锁，
+ * 验证吞吐量随搜索线程数线性增长
+ */
+final class ConfinedStructureVerifier implements StructureVerifier {
+
+    static final ConfinedStructureVerifier INSTANCE = new ConfinedStructureVerifier();
+
+    private ConfinedStructureVerifier() {
+    }
+
+    @Override
+    public BlockPos verify(SearchContext context, PlacementGrid grid, ChunkPos startChunk) {
+        if (context.structures() == null) {
+            return null;
+        }
+
+        ServerLevel level = context.level();
+        ServerChunkCache chunkSource = level.getChunkSource();
+        ChunkGenerator generator = chunkSource.getGenerator();
+
+        for (Holder<Structure> holder : context.structures()) {
+            Structure structure = holder.value();
+            Structure.GenerationContext generationContext = new Structure.GenerationContext(
+                level.registryAccess(),
+                generator,
+                generator.getBiomeSource(),
+                chunkSource.randomState(),
+                level.getStructureManager(),
+                chunkSource.getGeneratorState().getLevelSeed(),
+                startChunk,
+                level,
+                structure.biomes()::contains
+            );
+            if (structure.findValidGenerationPoint(generationContext).isPresent()) {
+                return grid.locatePos(startChunk);
+            }
+        }
+        return null;
+    }
+}
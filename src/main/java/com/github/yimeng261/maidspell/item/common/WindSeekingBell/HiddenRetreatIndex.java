@@ -0,0 +1,276 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 隐世之境位置索引
+ * 按世界持久化保存已确认的结构起始位置和已搜索过的空网格单元
+ *
+ * 工作原理：
+ * - 以放置网格单元为最小单位，每个单元要么已确认有结构，要么已确认为空，要么尚未搜索
+ * - 单元按 BUCKET_CELLS×BUCKET_CELLS 分桶，每桶用位图记录已搜索状态，查询只访问附近的桶
+ * - 世界种子不会改变，结果永久有效；放置规则变化（数据包修改）时通过指纹检测并清空索引
+ * - 只能在服务器主线程获取实例，获取后的读写是线程安全的
+ */
+public class HiddenRetreatIndex extends SavedData {
+
+    private static final String DATA_NAME = "touhou_little_maid_spell_hidden_retreat_index";
+
+    /** 每个桶的边长（网格单元）为 2^BUCKET_SHIFT */
+    private static final int BUCKET_SHIFT = 4;
+    private static final int BUCKET_CELLS = 1 << BUCKET_SHIFT;
+    private static final int BUCKET_MASK = BUCKET_CELLS - 1;
+    private static final int WORDS_PER_BUCKET = BUCKET_CELLS * BUCKET_CELLS / Long.SIZE;
+
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    private volatile long fingerprint;
+    private volatile int spacing;
+
+    /**
+     * 单个网格单元的索引状态
+     */
+    public enum CellState {
+        /** 尚未搜索 */
+        UNKNOWN,
+        /** 已搜索，没有结构 */
+        EMPTY,
+        /** 已确认存在结构 */
+        START
+    }
+
+    /**
+     * 索引查询结果
+     * @param resolved 索引是否足以给出确定答案
+     * @param structurePos 最近的结构位置，resolved为true且为null表示搜索范围内没有结构
+     */
+    public record QueryResult(boolean resolved, BlockPos structurePos) {
+        private static final QueryResult UNRESOLVED = new QueryResult(false, null);
+
+        public static QueryResult unresolved() {
+            return UNRESOLVED;
+        }
+    }
+
+    /**
+     * 分桶：记录桶内每个网格单元的搜索状态和结构位置
+     */
+    private static class Bucket {
+        final long[] searched = new long[WORDS_PER_BUCKET];
+        final Int2LongMap starts = new Int2LongOpenHashMap();
+
+        synchronized boolean isSearched(int local) {
+            return (searched[local >>> 6] & (1L << local)) != 0;
+        }
+
+        synchronized BlockPos getStart(int local) {
+            return starts.containsKey(local) ? BlockPos.of(starts.get(local)) : null;
+        }
+
+        synchronized void mark(int local, BlockPos start) {
+            searched[local >>> 6] |= 1L << local;
+            if (start != null) {
+                starts.put(local, start.asLong());
+            }
+        }
+    }
+
+    private HiddenRetreatIndex() {
+    }
+
+    /**
+     * 获取世界的位置索引，必须在服务器主线程调用
+     * @param level 服务器世界
+     * @param grid 当前世界的放置网格
+     * @return 与放置网格匹配的索引
+     */
+    public static HiddenRetreatIndex get(ServerLevel level, PlacementGrid grid) {
+        HiddenRetreatIndex index = level.getDataStorage().computeIfAbsent(
+            new SavedData.Factory<>(HiddenRetreatIndex::new, HiddenRetreatIndex::load, null), DATA_NAME);
+        long currentFingerprint = grid.fingerprint();
+        if (index.fingerprint != currentFingerprint || index.spacing != grid.spacing()) {
+            // 放置规则已变化，旧结果不再适用
+            index.buckets.clear();
+            index.fingerprint = currentFingerprint;
+            index.spacing = grid.spacing();
+            index.setDirty();
+        }
+        return index;
+    }
+
+    /**
+     * 查询网格单元的搜索状态
+     */
+    public CellState getState(int cellX, int cellZ) {
+        Bucket bucket = buckets.get(bucketKey(cellX, cellZ));
+        if (bucket == null) {
+            return CellState.UNKNOWN;
+        }
+        int local = localIndex(cellX, cellZ);
+        if (!bucket.isSearched(local)) {
+            return CellState.UNKNOWN;
+        }
+        return bucket.getStart(local) != null ? CellState.START : CellState.EMPTY;
+    }
+
+    /**
+     * 获取网格单元中已确认的结构位置
+     * @return 结构位置，单元为空或未搜索时返回null
+     */
+    public BlockPos getStart(int cellX, int cellZ) {
+        Bucket bucket = buckets.get(bucketKey(cellX, cellZ));
+        return bucket != null ? bucket.getStart(localIndex(cellX, cellZ)) : null;
+    }
+
+    /**
+     * 记录网格单元的搜索结果
+     * @param cellX 网格单元X坐标
+     * @param cellZ 网格单元Z坐标
+     * @param start 结构位置，null表示该单元没有结构
+     */
+    public void record(int cellX, int cellZ, BlockPos start) {
+        buckets.computeIfAbsent(bucketKey(cellX, cellZ), key -> new Bucket())
+            .mark(localIndex(cellX, cellZ), start);
+        setDirty();
+    }
+
+    /**
+     * 查询距离给定位置最近的已知结构
+     * 逐环向外检查网格单元，遇到未搜索的单元且其可能比当前最优结果更近时返回未确定
+     * 在主线程调用，最多检查 MAX_INDEX_QUERY_RINGS 环，更远的答案交给异步搜索
+     *
+     * @param pos 查询位置
+     * @param maxRadiusChunks 最大搜索半径（区块）
+     * @return 查询结果
+     */
+    public QueryResult findNearest(BlockPos pos, int maxRadiusChunks) {
+        int cellSpacing = this.spacing;
+        if (cellSpacing <= 0) {
+            return QueryResult.unresolved();
+        }
+
+        int originCellX = Math.floorDiv(pos.getX() >> 4, cellSpacing);
+        int originCellZ = Math.floorDiv(pos.getZ() >> 4, cellSpacing);
+        int radiusRings = maxRadiusChunks / cellSpacing + 1;
+        int maxRing = Math.min(radiusRings, SearchConfig.MAX_INDEX_QUERY_RINGS);
+        long ringWidthBlocks = (long) cellSpacing * 16;
+
+        BlockPos best = null;
+        long bestDistSqr = Long.MAX_VALUE;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // 第ring环中的结构与查询位置至少相距(ring - 1)个网格单元
+            long ringMinDist = Math.max(0, ring - 1) * ringWidthBlocks;
+            if (best != null && ringMinDist * ringMinDist > bestDistSqr) {
+                return new QueryResult(true, best);
+            }
+
+            for (int dz = -ring; dz <= ring; dz++) {
+                int stepX = (ring == 0 || Math.abs(dz) == ring) ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring; dx += stepX) {
+                    int cellX = originCellX + dx;
+                    int cellZ = originCellZ + dz;
+                    Bucket bucket = buckets.get(bucketKey(cellX, cellZ));
+                    int local = localIndex(cellX, cellZ);
+                    if (bucket == null || !bucket.isSearched(local)) {
+                        return QueryResult.unresolved();
+                    }
+
+                    BlockPos start = bucket.getStart(local);
+                    if (start != null) {
+                        long dx2 = start.getX() - pos.getX();
+                        long dz2 = start.getZ() - pos.getZ();
+                        long distSqr = dx2 * dx2 + dz2 * dz2;
+                        if (distSqr < bestDistSqr) {
+                            bestDistSqr = distSqr;
+                            best = start;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (maxRing < radiusRings) {
+            // 检查范围被截断，截断处之外可能有更近的结构（或是唯一的结构），答案不确定
+            return QueryResult.unresolved();
+        }
+        return new QueryResult(true, best);
+    }
+
+    private static long bucketKey(int cellX, int cellZ) {
+        return ChunkPos.asLong(cellX >> BUCKET_SHIFT, cellZ >> BUCKET_SHIFT);
+    }
+
+    private static int localIndex(int cellX, int cellZ) {
+        return (cellX & BUCKET_MASK) | ((cellZ & BUCKET_MASK) << BUCKET_SHIFT);
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider registries) {
+        LongArrayList keys = new LongArrayList(buckets.size());
+        LongArrayList searched = new LongArrayList(buckets.size() * WORDS_PER_BUCKET);
+        LongArrayList startCells = new LongArrayList();
+        LongArrayList startPositions = new LongArrayList();
+
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            long bucketIndex = keys.size();
+            synchronized (bucket) {
+                keys.add(entry.getKey().longValue());
+                searched.addElements(searched.size(), bucket.searched);
+                for (Int2LongMap.Entry start : bucket.starts.int2LongEntrySet()) {
+                    startCells.add(bucketIndex << 32 | start.getIntKey());
+                    startPositions.add(start.getLongValue());
+                }
+            }
+        }
+
+        tag.putLong("fingerprint", fingerprint);
+        tag.putInt("spacing", spacing);
+        tag.putLongArray("buckets", keys.toLongArray());
+        tag.putLongArray("searched", searched.toLongArray());
+        tag.putLongArray("startCells", startCells.toLongArray());
+        tag.putLongArray("startPositions", startPositions.toLongArray());
+        return tag;
+    }
+
+    private static HiddenRetreatIndex load(CompoundTag tag, HolderLookup.Provider registries) {
+        HiddenRetreatIndex index = new HiddenRetreatIndex();
+        index.fingerprint = tag.getLong("fingerprint");
+        index.spacing = tag.getInt("spacing");
+
+        long[] keys = tag.getLongArray("buckets");
+        long[] searched = tag.getLongArray("searched");
+        if (searched.length != keys.length * WORDS_PER_BUCKET) {
+            return new HiddenRetreatIndex(); // 数据损坏，重新搜索
+        }
+
+        Bucket[] loaded = new Bucket[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Bucket bucket = new Bucket();
+            System.arraycopy(searched, i * WORDS_PER_BUCKET, bucket.searched, 0, WORDS_PER_BUCKET);
+            loaded[i] = bucket;
+            index.buckets.put(keys[i], bucket);
+        }
+
+        long[] startCells = tag.getLongArray("startCells");
+        long[] startPositions = tag.getLongArray("startPositions");
+        for (int i = 0; i < Math.min(startCells.length, startPositions.length); i++) {
+            int bucketIndex = (int) (startCells[i] >>> 32);
+            if (bucketIndex < loaded.length) {
+                loaded[bucketIndex].starts.put((int) startCells[i], startPositions[i]);
+            }
+        }
+        return index;
+    }
+}
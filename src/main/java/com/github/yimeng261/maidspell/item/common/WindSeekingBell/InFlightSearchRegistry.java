@@ -0,0 +1,186 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 进行中搜索的注册表
+ * 新请求附近已有进行中的搜索时直接订阅该搜索，不再启动新的搜索线程
+ *
+ * 工作原理：
+ * - 按维度分区，每个维度以 SHARED_SEARCH_RADIUS 为边长分桶，查询只访问相邻的3×3个桶
+ * - 请求位置距离搜索原点不超过 SHARED_SEARCH_RADIUS，且搜索边界能为其扩大剪枝余量时加入该搜索
+ * - 搜索的结构数量和搜索半径都必须覆盖请求的需要
+ * - 记录每个搜索的订阅者数量，所有订阅者都取消后才取消搜索本身
+ */
+final class InFlightSearchRegistry {
+
+    /**
+     * 单个进行中的搜索
+     */
+    static final class InFlightSearch {
+        private final ResourceKey<Level> dimension;
+        private final BlockPos origin;
+        private final long bucketKey;
+        private final SearchFrontier frontier;
+        private final CompletableFuture<List<BlockPos>> traversal;
+        private int subscribers;
+
+        private InFlightSearch(ResourceKey<Level> dimension, BlockPos origin, SearchFrontier frontier,
+                               CompletableFuture<List<BlockPos>> traversal) {
+            this.dimension = dimension;
+            this.origin = origin;
+            this.bucketKey = bucketKey(origin.getX(), origin.getZ());
+            this.frontier = frontier;
+            this.traversal = traversal;
+        }
+
+        SearchFrontier frontier() {
+            return frontier;
+        }
+
+        /**
+         * 搜索结果：所有已找到的结构，由订阅者按各自位置重新排序
+         */
+        CompletableFuture<List<BlockPos>> traversal() {
+            return traversal;
+        }
+
+        /**
+         * 检查搜索的结构数量和半径是否覆盖请求
+         * 最大搜索半径只是名义上的边界，按最大半径进行的搜索视为覆盖任意半径
+         */
+        private boolean covers(int k, int maxRadius, long distance) {
+            int searchRadius = frontier.maxRadius();
+            return frontier.k() >= k
+                && (searchRadius >= SearchConfig.MAX_SEARCH_RADIUS || searchRadius >= maxRadius + (distance >> 4) + 1);
+        }
+
+        private long distanceTo(BlockPos pos) {
+            long dx = pos.getX() - origin.getX();
+            long dz = pos.getZ() - origin.getZ();
+            return (long) Math.ceil(Math.sqrt((double) (dx * dx + dz * dz)));
+        }
+    }
+
+    private final Map<ResourceKey<Level>, Long2ObjectMap<List<InFlightSearch>>> buckets = new HashMap<>();
+
+    /**
+     * 注册新启动的搜索，启动者计为第一个订阅者
+     * @param dimension 维度
+     * @param origin 搜索原点
+     * @param frontier 搜索边界
+     * @param traversal 搜索任务
+     * @return 注册的搜索
+     */
+    synchronized InFlightSearch register(ResourceKey<Level> dimension, BlockPos origin, SearchFrontier frontier,
+                                         CompletableFuture<List<BlockPos>> traversal) {
+        InFlightSearch search = new InFlightSearch(dimension, origin, frontier, traversal);
+        search.subscribers = 1;
+        buckets.computeIfAbsent(dimension, key -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(search.bucketKey, key -> new ArrayList<>(2)).add(search);
+        return search;
+    }
+
+    /**
+     * 订阅覆盖该位置的进行中搜索
+     * @param dimension 维度
+     * @param pos 请求位置
+     * @param k 需要的最近结构数量
+     * @param maxRadius 最大搜索半径（区块）
+     * @return 已订阅的搜索，没有可加入的搜索时返回null
+     */
+    synchronized InFlightSearch join(ResourceKey<Level> dimension, BlockPos pos, int k, int maxRadius) {
+        InFlightSearch search = find(dimension, pos, k, maxRadius, true);
+        if (search != null) {
+            search.subscribers++;
+        }
+        return search;
+    }
+
+    /**
+     * 检查该位置的请求能否加入进行中的搜索，不订阅
+     */
+    synchronized boolean canJoin(ResourceKey<Level> dimension, BlockPos pos, int k, int maxRadius) {
+        return find(dimension, pos, k, maxRadius, false) != null;
+    }
+
+    private InFlightSearch find(ResourceKey<Level> dimension, BlockPos pos, int k, int maxRadius, boolean cover) {
+        Long2ObjectMap<List<InFlightSearch>> dimensionBuckets = buckets.get(dimension);
+        if (dimensionBuckets == null) {
+            return null;
+        }
+
+        int bucketX = Math.floorDiv(pos.getX(), SearchConfig.SHARED_SEARCH_RADIUS);
+        int bucketZ = Math.floorDiv(pos.getZ(), SearchConfig.SHARED_SEARCH_RADIUS);
+        InFlightSearch nearest = null;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                List<InFlightSearch> bucket = dimensionBuckets.get(ChunkPos.asLong(bucketX + dx, bucketZ + dz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (InFlightSearch search : bucket) {
+                    long distance = search.distanceTo(pos);
+                    if (distance <= SearchConfig.SHARED_SEARCH_RADIUS && distance < nearestDistance
+                        && search.covers(k, maxRadius, distance)
+                        && !search.traversal.isDone() && search.frontier.canCover(distance)) {
+                        nearest = search;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        // 剪枝余量在确定加入的搜索时才扩大，避免无谓地增加其他搜索的工作量
+        if (nearest != null && cover && !nearest.frontier.tryCover(nearestDistance)) {
+            return null;
+        }
+        return nearest;
+    }
+
+    /**
+     * 取消一个订阅
+     * @return 如果已没有订阅者，搜索应被取消时返回true
+     */
+    synchronized boolean release(InFlightSearch search) {
+        return --search.subscribers == 0;
+    }
+
+    /**
+     * 移除已完成的搜索
+     */
+    synchronized void remove(InFlightSearch search) {
+        Long2ObjectMap<List<InFlightSearch>> dimensionBuckets = buckets.get(search.dimension);
+        if (dimensionBuckets == null) {
+            return;
+        }
+        List<InFlightSearch> bucket = dimensionBuckets.get(search.bucketKey);
+        if (bucket != null && bucket.remove(search) && bucket.isEmpty()) {
+            dimensionBuckets.remove(search.bucketKey);
+        }
+    }
+
+    /**
+     * 清空注册表
+     */
+    synchronized void clear() {
+        buckets.clear();
+    }
+
+    private static long bucketKey(int x, int z) {
+        return ChunkPos.asLong(Math.floorDiv(x, SearchConfig.SHARED_SEARCH_RADIUS),
+                               Math.floorDiv(z, SearchConfig.SHARED_SEARCH_RADIUS));
+    }
+}
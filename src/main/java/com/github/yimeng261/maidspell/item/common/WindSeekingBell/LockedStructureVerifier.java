@@ -0,0 +1,60 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * 基于findNearestMapStructure的验证器
+ * StructureCheck不是线程安全的，同一世界的所有验证通过分段锁串行执行
+ * 步进搜索没有放置网格可用，也使用此验证器检查候选点附近的网格单元
+ */
+final class LockedStructureVerifier implements StructureVerifier {
+
+    static final LockedStructureVerifier INSTANCE = new LockedStructureVerifier();
+
+    // 结构检查分段锁
+    private static final StripedLock STRUCTURE_CHECK_LOCK = new StripedLock(SearchConfig.LOCK_STRIPE_COUNT);
+
+    private LockedStructureVerifier() {
+    }
+
+    @Override
+    public BlockPos verify(SearchContext context, PlacementGrid grid, ChunkPos startChunk) {
+        // 候选区块即为确切的起始区块，只需检查其所在的网格单元
+        return findNearby(context, startChunk, 0);
+    }
+
+    /**
+     * 查找区块附近的结构
+     * @param context 搜索上下文
+     * @param chunk 待验证区块
+     * @param searchRadius 以网格单元计的验证半径，0表示只检查区块所在的网格单元
+     * @return 结构位置，不存在时返回null
+     */
+    BlockPos findNearby(SearchContext context, ChunkPos chunk, int searchRadius) {
+        if (context.structures() == null) {
+            return null;
+        }
+
+        ServerLevel level = context.level();
+        BlockPos chunkCenter = new BlockPos(
+            chunk.getMinBlockX() + SearchConfig.CHUNK_CENTER_OFFSET,
+            SearchConfig.DEFAULT_STRUCTURE_Y,
+            chunk.getMinBlockZ() + SearchConfig.CHUNK_CENTER_OFFSET
+        );
+
+        long waitStart = System.nanoTime();
+        return STRUCTURE_CHECK_LOCK.executeWithLock(level, () -> {
+            SearchMetrics.INSTANCE.lockWaitNanos.add(System.nanoTime() - waitStart);
+            var result = level.getChunkSource().getGenerator().findNearestMapStructure(
+                level,
+                context.structures(),
+                chunkCenter,
+                searchRadius,
+                false
+            );
+            return result != null ? result.getFirst() : null;
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.Config;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 主线程分片验证器
+ * 搜索线程只做候选枚举和生物群系筛选等纯计算，通过筛选的候选放入队列，
+ * 由服务器主线程在每个tick的时间预算内依次验证。StructureCheck只在主线程访问，严格线程安全，
+ * 对每tick耗时的影响不超过配置的预算
+ *
+ * 工作原理：
+ * - 搜索线程提交验证后立即返回未完成的Future，继续枚举后续候选，在子任务结束时统一等待
+ * - 主线程每个tick至少验证一个候选，之后在 Config.mainThreadVerificationBudgetMs 内尽量多地验证
+ * - 所属搜索已取消的候选直接取消，不再验证
+ * - 服务器停止时拒绝新的候选并取消队列中所有候选，等待中的搜索线程随即退出
+ */
+final class MainThreadStructureVerifier implements StructureVerifier {
+
+    static final MainThreadStructureVerifier INSTANCE = new MainThreadStructureVerifier();
+
+    /**
+     * 待验证的候选
+     */
+    private record Request(Supplier<BlockPos> task, BooleanSupplier cancelled, CompletableFuture<BlockPos> future,
+                           long enqueuedNanos) {
+    }
+
+    private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final Object stateLock = new Object();
+    private boolean accepting;
+
+    private MainThreadStructureVerifier() {
+    }
+
+    /**
+     * 同步验证；在服务器主线程上直接验证，等待只有主线程才会处理的队列会造成死锁
+     */
+    @Override
+    public BlockPos verify(SearchContext context, PlacementGrid grid, ChunkPos startChunk) {
+        if (context.level().getServer().isSameThread()) {
+            return LockedStructureVerifier.INSTANCE.verify(context, grid, startChunk);
+        }
+        return verifyAsync(context, grid, startChunk, () -> false).join();
+    }
+
+    @Override
+    public CompletableFuture<BlockPos> verifyAsync(SearchContext context, PlacementGrid grid, ChunkPos startChunk,
+                                                   BooleanSupplier cancelled) {
+        return findNearbyAsync(context, startChunk, 0, cancelled);
+    }
+
+    @Override
+    public CompletableFuture<BlockPos> findNearbyAsync(SearchContext context, ChunkPos chunk, int searchRadius,
+                                                       BooleanSupplier cancelled) {
+        return submit(() -> LockedStructureVerifier.INSTANCE.findNearby(context, chunk, searchRadius), cancelled);
+    }
+
+    private CompletableFuture<BlockPos> submit(Supplier<BlockPos> task, BooleanSupplier cancelled) {
+        CompletableFuture<BlockPos> future = new CompletableFuture<>();
+        synchronized (stateLock) {
+            if (!accepting) {
+                future.cancel(false);
+                return future;
+            }
+            queue.add(new Request(task, cancelled, future, System.nanoTime()));
+        }
+        return future;
+    }
+
+    /**
+     * 在时间预算内验证队列中的候选，每个服务器tick调用一次
+     */
+    void drain() {
+        long deadline = System.nanoTime() + (long) (Config.mainThreadVerificationBudgetMs * 1_000_000L);
+        Request request;
+        do {
+            request = queue.poll();
+            if (request == null) {
+                return;
+            }
+            if (request.cancelled().getAsBoolean()) {
+                request.future().cancel(false);
+                continue;
+            }
+            SearchMetrics.INSTANCE.verificationQueueWaitNanos.add(System.nanoTime() - request.enqueuedNanos());
+            try {
+                request.future().complete(request.task().get());
+            } catch (Exception e) {
+                request.future().completeExceptionally(e);
+            }
+        } while (System.nanoTime() < deadline);
+    }
+
+    /**
+     * 开始接受候选，在服务器启动时调用
+     */
+    void start() {
+        synchronized (stateLock) {
+            accepting = true;
+        }
+    }
+
+    /**
+     * 拒绝新的候选并取消队列中所有候选，在服务器停止时调用
+     */
+    void shutdown() {
+        synchronized (stateLock) {
+            accepting = false;
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future().cancel(false);
+        }
+    }
+}
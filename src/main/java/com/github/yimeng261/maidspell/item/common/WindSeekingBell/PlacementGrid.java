@@ -0,0 +1,119 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.Global;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkGeneratorStructureState;
+import net.minecraft.world.level.levelgen.structure.StructureSet;
+import net.minecraft.world.level.levelgen.structure.placement.RandomSpreadStructurePlacement;
+import net.minecraft.world.level.levelgen.structure.placement.StructurePlacement;
+
+/**
+ * 结构放置网格
+ * 基于hidden_retreat结构集的RandomSpreadStructurePlacement计算合法的结构起始区块
+ *
+ * 工作原理：
+ * - 世界被划分为spacing×spacing区块的网格单元
+ * - 每个网格单元中最多只有一个候选起始区块，由世界种子和salt唯一决定
+ * - 搜索时只需枚举网格单元并验证其候选区块，而不必逐个步进区块
+ */
+public class PlacementGrid {
+
+    private static final ResourceKey<StructureSet> HIDDEN_RETREAT_SET_KEY = ResourceKey.create(
+        Registries.STRUCTURE_SET, new ResourceLocation("touhou_little_maid_spell", "hidden_retreat_set"));
+
+    private final RandomSpreadStructurePlacement placement;
+    private final ChunkGeneratorStructureState structureState;
+    private final long seed;
+    private final int spacing;
+
+    private PlacementGrid(RandomSpreadStructurePlacement placement, ChunkGeneratorStructureState structureState) {
+        this.placement = placement;
+        this.structureState = structureState;
+        this.seed = structureState.getLevelSeed();
+        this.spacing = placement.spacing();
+    }
+
+    /**
+     * 从注册表读取hidden_retreat结构集的放置规则
+     * @param level 服务器世界
+     * @return 放置网格；若结构集不存在或不是随机分布放置（例如被数据包覆盖），返回null
+     */
+    public static PlacementGrid create(ServerLevel level) {
+        try {
+            StructureSet structureSet = level.registryAccess()
+                .registryOrThrow(Registries.STRUCTURE_SET)
+                .getOrThrow(HIDDEN_RETREAT_SET_KEY);
+            StructurePlacement placement = structureSet.placement();
+            if (placement instanceof RandomSpreadStructurePlacement randomSpread) {
+                Global.LOGGER.debug("Initialized placement grid for hidden_retreat: spacing {}, separation {}",
+                    randomSpread.spacing(), randomSpread.separation());
+                return new PlacementGrid(randomSpread, level.getChunkSource().getGeneratorState());
+            }
+            Global.LOGGER.debug("hidden_retreat placement is not random_spread, falling back to stepped search");
+        } catch (Exception e) {
+            Global.LOGGER.error("Failed to read hidden_retreat structure set placement", e);
+        }
+        return null;
+    }
+
+    /**
+     * 获取网格单元大小（区块）
+     */
+    public int spacing() {
+        return spacing;
+    }
+
+    /**
+     * 计算放置规则的指纹
+     * 由网格参数和若干网格单元的候选区块组成，种子、salt或spacing变化时指纹随之改变
+     * 用于判断持久化的搜索结果是否仍然适用于当前世界
+     */
+    public long fingerprint() {
+        long hash = 31L * spacing + placement.separation();
+        for (int i = -1; i <= 1; i++) {
+            hash = 31L * hash + candidateChunk(i, -i).toLong();
+        }
+        return hash;
+    }
+
+    /**
+     * 将区块坐标转换为所在的网格单元坐标
+     */
+    public int cellOf(int chunkCoord) {
+        return Math.floorDiv(chunkCoord, spacing);
+    }
+
+    /**
+     * 获取网格单元中唯一的候选起始区块
+     * @param cellX 网格单元X坐标
+     * @param cellZ 网格单元Z坐标
+     * @return 候选起始区块
+     */
+    public ChunkPos candidateChunk(int cellX, int cellZ) {
+        // getPotentialStructureChunk 接收的是区块坐标，内部会自行除以spacing得到网格单元
+        return placement.getPotentialStructureChunk(seed, cellX * spacing, cellZ * spacing);
+    }
+
+    /**
+     * 获取起始区块对应的结构定位位置，与findNearestMapStructure的返回值一致
+     * @param chunk 起始区块
+     * @return 定位位置
+     */
+    public BlockPos locatePos(ChunkPos chunk) {
+        return placement.getLocatePos(chunk);
+    }
+
+    /**
+     * 检查候选区块是否满足放置规则的额外限制（频率、排除区域等）
+     * @param chunk 候选区块
+     * @return 如果结构可以在此区块起始返回true
+     */
+    public boolean isStartChunk(ChunkPos chunk) {
+        return placement.isStructureChunk(structureState, chunk.x, chunk.z);
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.Global;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预计算的结构位置索引
+ * 管理员预先遍历世界中指定半径内的所有隐世之境，结果写入紧凑的有序二进制文件，运行时整体读入内存
+ * 不使用内存映射：被映射的文件在部分平台上无法被替换，重新预计算时会写入失败
+ *
+ * 文件格式（小端序）：
+ * - 文件头：魔数、版本、世界种子、放置规则指纹、覆盖范围中心区块X/Z、覆盖半径（区块）、条目数
+ * - 条目：分块键（long）、结构X坐标（int）、结构Z坐标（int），按分块键和坐标排序
+ *
+ * 查询方式：
+ * - 结构按 2^TILE_SHIFT 方块的分块归类，从查询位置所在分块逐环向外，每个分块通过二分查找定位其条目
+ * - 最近结构不超过查询位置到覆盖范围边界的距离时，范围外不可能有更近的结构，结果才是确定的
+ * - 世界种子或放置规则与文件不一致时忽略该文件
+ */
+public final class PrecomputedStructureIndex {
+
+    private static final int MAGIC = 0x48524958; // "HRIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int ENTRY_BYTES = 16;
+
+    /** 分块边长（方块）为 2^TILE_SHIFT */
+    private static final int TILE_SHIFT = 11;
+    private static final long TILE_SIZE = 1L << TILE_SHIFT;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int centerChunkX;
+    private final int centerChunkZ;
+    private final int radius;
+
+    private PrecomputedStructureIndex(ByteBuffer buffer, int centerChunkX, int centerChunkZ, int radius, int count) {
+        this.buffer = buffer;
+        this.centerChunkX = centerChunkX;
+        this.centerChunkZ = centerChunkZ;
+        this.radius = radius;
+        this.count = count;
+    }
+
+    /**
+     * 获取维度的索引文件路径
+     */
+    static Path path(MinecraftServer server, ResourceKey<Level> dimension) {
+        return server.getWorldPath(LevelResource.ROOT).resolve("data")
+            .resolve("touhou_little_maid_spell_hidden_retreats_" + dimension.location().getPath() + ".bin");
+    }
+
+    /**
+     * 打开索引文件并整体读入内存
+     * @param path 文件路径
+     * @param seed 当前世界种子
+     * @param fingerprint 当前放置规则指纹，没有放置网格时为0
+     * @return 索引；文件不存在、损坏或与当前世界不匹配时返回null
+     */
+    static PrecomputedStructureIndex open(Path path, long seed, long fingerprint) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // 读完后即关闭文件，之后的重新预计算可以直接替换它
+            ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    Global.LOGGER.warn("WindSeekingBell: Ignoring truncated precomputed index: {}", path);
+                    return null;
+                }
+            }
+            buffer.clear();
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                Global.LOGGER.warn("WindSeekingBell: Ignoring precomputed index with unknown format: {}", path);
+                return null;
+            }
+            if (buffer.getLong(8) != seed || buffer.getLong(16) != fingerprint) {
+                Global.LOGGER.warn("WindSeekingBell: Ignoring precomputed index made for another seed or placement: {}", path);
+                return null;
+            }
+            int count = buffer.getInt(36);
+            if (count < 0 || size != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+                Global.LOGGER.warn("WindSeekingBell: Ignoring truncated precomputed index: {}", path);
+                return null;
+            }
+            return new PrecomputedStructureIndex(buffer, buffer.getInt(24), buffer.getInt(28), buffer.getInt(32), count);
+        } catch (IOException e) {
+            Global.LOGGER.warn("WindSeekingBell: Failed to read precomputed index {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入索引文件，先写临时文件再替换，避免读到写了一半的文件
+     * @param path 文件路径
+     * @param seed 世界种子
+     * @param fingerprint 放置规则指纹，没有放置网格时为0
+     * @param center 覆盖范围的中心区块
+     * @param radius 覆盖半径（区块）
+     * @param structures 覆盖范围内的所有结构位置
+     */
+    static void write(Path path, long seed, long fingerprint, ChunkPos center, int radius,
+                      List<BlockPos> structures) throws IOException {
+        long[][] entries = new long[structures.size()][];
+        for (int i = 0; i < entries.length; i++) {
+            BlockPos pos = structures.get(i);
+            entries[i] = new long[]{tileKey(pos.getX(), pos.getZ()), pos.getX(), pos.getZ()};
+        }
+        Arrays.sort(entries, (a, b) -> {
+            int byKey = Long.compare(a[0], b[0]);
+            if (byKey != 0) {
+                return byKey;
+            }
+            int byX = Long.compare(a[1], b[1]);
+            return byX != 0 ? byX : Long.compare(a[2], b[2]);
+        });
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + entries.length * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(seed).putLong(fingerprint)
+            .putInt(center.x).putInt(center.z).putInt(radius).putInt(entries.length);
+        for (long[] entry : entries) {
+            buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]);
+        }
+        buffer.flip();
+
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 查询距离给定位置最近的结构
+     * @param pos 查询位置
+     * @return 查询结果；位置不在覆盖范围内或覆盖范围不足以确定答案时返回未确定
+     */
+    public HiddenRetreatIndex.QueryResult findNearest(BlockPos pos) {
+        // 查询位置到覆盖范围边界的距离，超出此距离的结构可能被范围外更近的结构取代
+        long minX = (long) (centerChunkX - radius) << 4;
+        long maxX = ((long) (centerChunkX + radius) << 4) + 15;
+        long minZ = (long) (centerChunkZ - radius) << 4;
+        long maxZ = ((long) (centerChunkZ + radius) << 4) + 15;
+        long edgeGap = Math.min(Math.min(pos.getX() - minX, maxX - pos.getX()),
+                                Math.min(pos.getZ() - minZ, maxZ - pos.getZ()));
+        if (edgeGap < 0) {
+            return HiddenRetreatIndex.QueryResult.unresolved();
+        }
+
+        int originTileX = pos.getX() >> TILE_SHIFT;
+        int originTileZ = pos.getZ() >> TILE_SHIFT;
+        int maxRing = (int) (edgeGap / TILE_SIZE) + 1;
+        BlockPos best = null;
+        long bestDistSqr = Long.MAX_VALUE;
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // 第ring环中的结构与查询位置至少相距(ring - 1)个分块
+            long ringMinDist = Math.max(0, ring - 1) * TILE_SIZE;
+            if (best != null && ringMinDist * ringMinDist > bestDistSqr) {
+                break;
+            }
+            for (int dz = -ring; dz <= ring; dz++) {
+                int stepX = (ring == 0 || Math.abs(dz) == ring) ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring; dx += stepX) {
+                    long key = ChunkPos.asLong(originTileX + dx, originTileZ + dz);
+                    for (int i = lowerBound(key); i < count && keyAt(i) == key; i++) {
+                        int x = buffer.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8);
+                        int z = buffer.getInt(HEADER_BYTES + i * ENTRY_BYTES + 12);
+                        long ddx = x - pos.getX();
+                        long ddz = z - pos.getZ();
+                        long distSqr = ddx * ddx + ddz * ddz;
+                        if (distSqr < bestDistSqr) {
+                            bestDistSqr = distSqr;
+                            best = new BlockPos(x, SearchConfig.DEFAULT_STRUCTURE_Y, z);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (best == null || bestDistSqr > edgeGap * edgeGap) {
+            return HiddenRetreatIndex.QueryResult.unresolved();
+        }
+        return new HiddenRetreatIndex.QueryResult(true, best);
+    }
+
+    /**
+     * 索引中的结构数量
+     */
+    public int size() {
+        return count;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    /**
+     * 二分查找第一个分块键不小于key的条目
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long tileKey(int x, int z) {
+        return ChunkPos.asLong(x >> TILE_SHIFT, z >> TILE_SHIFT);
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.Global;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 搜索准入控制器
+ * 位于搜索引擎之前，限制全服并发搜索数量，避免多名玩家同时摇铃时抢占服务器CPU
+ *
+ * 工作原理：
+ * - 全服同时进行的搜索不超过 MAX_CONCURRENT_SEARCHES，其余请求排队；能加入进行中搜索的请求不占用名额
+ * - 每名玩家最多一个进行中的搜索和一个排队的请求，新请求替换旧的排队请求；与已有请求相同区域的请求被合并
+ * - 同一玩家两次搜索的启动间隔不小于 PLAYER_SEARCH_COOLDOWN
+ * - 玩家下线或切换维度时丢弃其排队请求并取消其订阅，没有其他订阅者的搜索随之停止
+ * - 所有状态只在服务器主线程访问，排队的请求在每个服务器tick按玩家提交顺序启动
+ */
+public class SearchAdmissionController {
+
+    /**
+     * 提交结果
+     */
+    public enum Admission {
+        /** 已接受，立即启动或排队等待 */
+        ACCEPTED,
+        /** 与该玩家已有的请求重复，已合并 */
+        DUPLICATE
+    }
+
+    /**
+     * 单个搜索请求
+     */
+    private static final class Ticket {
+        final ServerLevel level;
+        final BlockPos pos;
+        final Consumer<BlockPos> callback;
+        final long submittedNanos = System.nanoTime();
+        CompletableFuture<BlockPos> future;
+        boolean joined;
+        boolean cancelled;
+
+        Ticket(ServerLevel level, BlockPos pos, Consumer<BlockPos> callback) {
+            this.level = level;
+            this.pos = pos;
+            this.callback = callback;
+        }
+
+        boolean sameRegion(ResourceKey<Level> dimension, BlockPos other) {
+            return level.dimension().equals(dimension)
+                && Math.floorDiv(pos.getX(), SearchConfig.SEARCH_REGION_SIZE)
+                    == Math.floorDiv(other.getX(), SearchConfig.SEARCH_REGION_SIZE)
+                && Math.floorDiv(pos.getZ(), SearchConfig.SEARCH_REGION_SIZE)
+                    == Math.floorDiv(other.getZ(), SearchConfig.SEARCH_REGION_SIZE);
+        }
+    }
+
+    /**
+     * 单个玩家的请求队列
+     */
+    private static final class PlayerQueue {
+        Ticket active;
+        Ticket queued;
+        long lastStart = Long.MIN_VALUE / 2;
+    }
+
+    private final StructureSearchEngine searchEngine;
+    // 按玩家首次提交的顺序排列，启动排队请求时依次轮询；玩家下线时移除
+    private final Map<UUID, PlayerQueue> queues = new LinkedHashMap<>();
+    // 已启动且尚未完成的请求，其中自行启动搜索的请求占用并发名额
+    private final Set<Ticket> running = new HashSet<>();
+
+    public SearchAdmissionController(StructureSearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    /**
+     * 提交搜索请求，必须在服务器主线程调用
+     * @param player 发起搜索的玩家
+     * @param level 服务器世界
+     * @param pos 搜索中心
+     * @param callback 搜索完成后在主线程调用，参数为结构位置或null；请求被取消时不会调用
+     * @return 提交结果
+     */
+    public Admission submit(ServerPlayer player, ServerLevel level, BlockPos pos, Consumer<BlockPos> callback) {
+        PlayerQueue queue = queues.computeIfAbsent(player.getUUID(), id -> new PlayerQueue());
+        if ((queue.active != null && queue.active.sameRegion(level.dimension(), pos))
+            || (queue.queued != null && queue.queued.sameRegion(level.dimension(), pos))) {
+            return Admission.DUPLICATE;
+        }
+
+        // 新请求替换尚未启动的旧请求
+        queue.queued = new Ticket(level, pos, callback);
+        tick();
+        return Admission.ACCEPTED;
+    }
+
+    /**
+     * 启动满足并发上限和冷却时间的排队请求，每个服务器tick调用一次
+     */
+    public void tick() {
+        if (queues.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int slots = SearchConfig.MAX_CONCURRENT_SEARCHES - occupiedSlots();
+        List<UUID> started = new ArrayList<>();
+        for (Map.Entry<UUID, PlayerQueue> entry : queues.entrySet()) {
+            PlayerQueue queue = entry.getValue();
+            if (queue.queued == null || queue.active != null
+                || now - queue.lastStart < SearchConfig.PLAYER_SEARCH_COOLDOWN) {
+                continue;
+            }
+
+            Ticket ticket = queue.queued;
+            // 能加入进行中搜索的请求不会启动新的搜索线程，名额用尽时也可以启动
+            ticket.joined = searchEngine.canJoinInFlightSearch(ticket.level, ticket.pos);
+            if (!ticket.joined) {
+                if (slots <= 0) {
+                    continue;
+                }
+                slots--;
+            }
+
+            queue.queued = null;
+            queue.active = ticket;
+            queue.lastStart = now;
+            start(queue, ticket);
+            started.add(entry.getKey());
+        }
+
+        // 已启动的玩家移到队尾，保证各玩家轮流获得搜索名额
+        for (UUID playerId : started) {
+            PlayerQueue queue = queues.remove(playerId);
+            if (queue != null) {
+                queues.put(playerId, queue);
+            }
+        }
+    }
+
+    private int occupiedSlots() {
+        int slots = 0;
+        for (Ticket ticket : running) {
+            if (!ticket.joined) {
+                slots++;
+            }
+        }
+        return slots;
+    }
+
+    private void start(PlayerQueue queue, Ticket ticket) {
+        SearchMetrics.INSTANCE.admissionWaitNanos.add(System.nanoTime() - ticket.submittedNanos);
+        running.add(ticket);
+        ticket.future = searchEngine.searchAsync(ticket.level, ticket.pos);
+        ticket.future.whenComplete((result, throwable) ->
+            ticket.level.getServer().execute(() -> finish(queue, ticket, throwable == null ? result : null)));
+    }
+
+    private void finish(PlayerQueue queue, Ticket ticket, BlockPos result) {
+        if (!running.remove(ticket)) {
+            return; // 服务器停止时已丢弃
+        }
+        if (queue.active == ticket) {
+            queue.active = null;
+        }
+
+        if (!ticket.cancelled) {
+            SearchMetrics.INSTANCE.recordSearch(System.nanoTime() - ticket.submittedNanos);
+            try {
+                ticket.callback.accept(result);
+            } catch (Exception e) {
+                Global.LOGGER.error("WindSeekingBell: Search callback failed", e);
+            }
+        }
+        tick();
+    }
+
+    /**
+     * 取消玩家的所有请求，在玩家下线或切换维度时调用
+     * @param playerId 玩家UUID
+     */
+    public void cancel(UUID playerId) {
+        PlayerQueue queue = queues.remove(playerId);
+        if (queue == null) {
+            return;
+        }
+        queue.queued = null;
+        if (queue.active != null) {
+            Ticket ticket = queue.active;
+            ticket.cancelled = true;
+            // 只取消该玩家的订阅，搜索被其他玩家共享时继续进行
+            if (ticket.future != null) {
+                ticket.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 丢弃所有请求并取消所有搜索，在服务器停止时调用
+     */
+    public void shutdown() {
+        Iterator<PlayerQueue> iterator = queues.values().iterator();
+        while (iterator.hasNext()) {
+            PlayerQueue queue = iterator.next();
+            iterator.remove();
+            if (queue.active != null) {
+                queue.active.cancelled = true;
+                if (queue.active.future != null) {
+                    queue.active.future.cancel(false);
+                }
+            }
+        }
+        running.clear();
+    }
+}
@@ -1,83 +1,168 @@
 package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * 搜索缓存管理器
- * 负责管理结构搜索的缓存和正在进行的搜索任务
+ * 负责管理结构搜索的缓存
+ *
+ * 缓存结构：
+ * - 按维度分区，每个维度以 CACHE_MOVE_THRESHOLD 为边长分桶，查询只访问相邻的3×3个桶
+ * - 同一搜索区域（SEARCH_REGION_SIZE）只保留最新的一条结果，区域以long打包坐标为键
+ * - 侵入式LRU链表限制缓存总条目数，超出 MAX_CACHE_ENTRIES 时淘汰最久未使用的条目
+ * - 时间轮负责过期清理，每次操作只推进经过的时间槽，不再整表扫描
+ * - 所有操作都是常数时间，在同一把锁内完成
  */
 public class SearchCacheManager {
-    
-    // 结构缓存：Key为"x,z"字符串，Value为CacheEntry
-    private final Map<String, CacheEntry> structureCache = new ConcurrentHashMap<>();
-    
-    // 正在进行的搜索：避免对同一区域的重复搜索
-    private final ConcurrentMap<String, CompletableFuture<BlockPos>> ongoingSearches = new ConcurrentHashMap<>();
-    
+
+    // 按维度分区的结构缓存
+    private final Map<ResourceKey<Level>, DimensionCache> dimensionCaches = new HashMap<>();
+
+    // LRU链表：头部为最久未使用的条目
+    private CacheEntry lruHead;
+    private CacheEntry lruTail;
+    private int size;
+
+    // 过期时间轮
+    private final ExpiryWheel expiryWheel = new ExpiryWheel();
+
     /**
      * 缓存条目类
      */
-    private static class CacheEntry {
-        final BlockPos searchCenter;  // 搜索中心位置
+    private static final class CacheEntry {
+        final DimensionCache owner;   // 所属维度缓存，确保不跨维度使用缓存
+        final long regionKey;         // 搜索区域键
+        final long bucketKey;         // 空间分桶键
+        final int centerX;            // 搜索中心位置
+        final int centerZ;
         final BlockPos structurePos;  // 结构位置，null表示该区域没有结构
-        final long timestamp;         // 缓存时间戳
-        final String dimensionKey;    // 维度标识符，确保不跨维度使用缓存
-        
-        CacheEntry(BlockPos searchCenter, BlockPos structurePos, long time, String dimensionKey) {
-            this.searchCenter = searchCenter;
+        final long expireAt;          // 过期时间戳
+
+        CacheEntry prev;              // LRU链表
+        CacheEntry next;
+        CacheEntry wheelNext;         // 时间轮槽内链表
+        boolean removed;
+
+        CacheEntry(DimensionCache owner, long regionKey, long bucketKey, int centerX, int centerZ,
+                   BlockPos structurePos, long expireAt) {
+            this.owner = owner;
+            this.regionKey = regionKey;
+            this.bucketKey = bucketKey;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
             this.structurePos = structurePos;
-            this.timestamp = time;
-            this.dimensionKey = dimensionKey;
+            this.expireAt = expireAt;
         }
-        
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > SearchConfig.CACHE_EXPIRY_TIME;
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
         }
-        
+
         /**
-         * 检查当前玩家位置是否可以使用此缓存
-         * @param playerPos 当前玩家位置
-         * @param currentDimensionKey 当前维度标识符
-         * @return 是否可以使用缓存
+         * 计算与给定位置的水平距离平方
          */
-        boolean isValidForPosition(BlockPos playerPos, String currentDimensionKey) {
-            // 检查维度是否匹配
-            if (!this.dimensionKey.equals(currentDimensionKey)) {
-                return false;
+        long distanceSqr(int x, int z) {
+            long dx = x - centerX;
+            long dz = z - centerZ;
+            return dx * dx + dz * dz;
+        }
+    }
+
+    /**
+     * 单个维度的缓存：区域索引和空间分桶
+     */
+    private static final class DimensionCache {
+        final Long2ObjectMap<CacheEntry> regions = new Long2ObjectOpenHashMap<>();
+        final Long2ObjectMap<List<CacheEntry>> buckets = new Long2ObjectOpenHashMap<>();
+    }
+
+    /**
+     * 过期时间轮
+     * 整个过期时间落在一圈之内，每个槽内的条目用单链表串联
+     */
+    private static final class ExpiryWheel {
+        private static final int SLOTS = SearchConfig.CACHE_WHEEL_SLOTS;
+        private static final long TICK_MILLIS = SearchConfig.CACHE_EXPIRY_TIME / (SLOTS - 1) + 1;
+
+        private final CacheEntry[] slots = new CacheEntry[SLOTS];
+        private long currentTick = -1;
+
+        void schedule(CacheEntry entry) {
+            int slot = (int) Math.floorMod(entry.expireAt / TICK_MILLIS, (long) SLOTS);
+            entry.wheelNext = slots[slot];
+            slots[slot] = entry;
+        }
+
+        /**
+         * 推进时间轮，清理已经经过的时间槽中过期的条目
+         */
+        void advance(long now, SearchCacheManager manager) {
+            long nowTick = now / TICK_MILLIS;
+            if (currentTick < 0) {
+                currentTick = nowTick;
+                return;
+            }
+
+            for (long tick = currentTick; tick < nowTick && tick < currentTick + SLOTS; tick++) {
+                int slot = (int) Math.floorMod(tick, (long) SLOTS);
+                CacheEntry entry = slots[slot];
+                slots[slot] = null;
+                while (entry != null) {
+                    CacheEntry next = entry.wheelNext;
+                    entry.wheelNext = null;
+                    if (entry.removed) {
+                        // 已被替换或淘汰，直接丢弃
+                    } else if (entry.isExpired(now)) {
+                        manager.unlink(entry);
+                    } else {
+                        entry.wheelNext = slots[slot];
+                        slots[slot] = entry;
+                    }
+                    entry = next;
+                }
             }
-            
-            double moveDistance = Math.sqrt(playerPos.distSqr(searchCenter));
-            return moveDistance <= SearchConfig.CACHE_MOVE_THRESHOLD;
+            currentTick = Math.max(currentTick, nowTick);
+        }
+
+        void clear() {
+            Arrays.fill(slots, null);
+            currentTick = -1;
         }
     }
-    
+
     /**
      * 缓存检查结果类
      */
     public static class CacheCheckResult {
         public final boolean hasCache;
         public final BlockPos structurePos;
-        
+
         private CacheCheckResult(boolean hasCache, BlockPos pos) {
             this.hasCache = hasCache;
             this.structurePos = pos;
         }
-        
+
         public static CacheCheckResult noCache() {
             return new CacheCheckResult(false, null);
         }
-        
+
         public static CacheCheckResult withResult(BlockPos pos) {
             return new CacheCheckResult(true, pos);
         }
     }
-    
+
     /**
      * 检查缓存中是否有该位置的搜索结果
      * @param serverLevel 服务器世界级别
@@ -85,25 +170,60 @@ public class SearchCacheManager {
      * @return 缓存检查结果
      */
     public CacheCheckResult checkCache(ServerLevel serverLevel, BlockPos playerPos) {
-        // 清理过期缓存
-        cleanExpiredCache();
-        
-        // 获取当前维度标识符
-        String currentDimensionKey = serverLevel.dimension().location().toString();
-        
-        // 检查是否有可用的缓存结果
-        for (CacheEntry cache : structureCache.values()) {
-            if (cache.isExpired()) continue;
-            
-            // 检查玩家相对于原搜索位置的移动距离和维度匹配
-            if (cache.isValidForPosition(playerPos, currentDimensionKey)) {
-                return CacheCheckResult.withResult(cache.structurePos); // 可能是null，表示该区域没有结构
+        return checkCache(serverLevel.dimension(), playerPos, System.currentTimeMillis());
+    }
+
+    /**
+     * 检查缓存中是否有该位置的搜索结果
+     * 只检查玩家所在桶及相邻的8个桶，返回距离最近的有效条目
+     * @param dimension 维度
+     * @param playerPos 玩家位置
+     * @param now 当前时间戳
+     * @return 缓存检查结果
+     */
+    public synchronized CacheCheckResult checkCache(ResourceKey<Level> dimension, BlockPos playerPos, long now) {
+        expiryWheel.advance(now, this);
+
+        DimensionCache cache = dimensionCaches.get(dimension);
+        if (cache == null) {
+            return CacheCheckResult.noCache();
+        }
+
+        int x = playerPos.getX();
+        int z = playerPos.getZ();
+        int bucketX = Math.floorDiv(x, SearchConfig.CACHE_MOVE_THRESHOLD);
+        int bucketZ = Math.floorDiv(z, SearchConfig.CACHE_MOVE_THRESHOLD);
+        long maxDistSqr = (long) SearchConfig.CACHE_MOVE_THRESHOLD * SearchConfig.CACHE_MOVE_THRESHOLD;
+
+        CacheEntry best = null;
+        long bestDistSqr = Long.MAX_VALUE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                List<CacheEntry> bucket = cache.buckets.get(ChunkPos.asLong(bucketX + dx, bucketZ + dz));
+                if (bucket == null) continue;
+
+                for (int i = 0; i < bucket.size(); i++) {
+                    CacheEntry entry = bucket.get(i);
+                    if (entry.isExpired(now)) continue;
+
+                    // 检查玩家相对于原搜索位置的移动距离
+                    long distSqr = entry.distanceSqr(x, z);
+                    if (distSqr <= maxDistSqr && distSqr < bestDistSqr) {
+                        best = entry;
+                        bestDistSqr = distSqr;
+                    }
+                }
             }
         }
-        
-        return CacheCheckResult.noCache(); // 没有找到相关缓存，需要进行搜索
+
+        if (best == null) {
+            return CacheCheckResult.noCache(); // 没有找到相关缓存，需要进行搜索
+        }
+
+        moveToTail(best);
+        return CacheCheckResult.withResult(best.structurePos); // 可能是null，表示该区域没有结构
     }
-    
+
     /**
      * 更新缓存
      * @param serverLevel 服务器世界级别
@@ -111,81 +231,121 @@ public class SearchCacheManager {
      * @param result 搜索结果（可能为null）
      */
     public void updateCache(ServerLevel serverLevel, BlockPos searchCenter, BlockPos result) {
-        String key = generateSearchKey(searchCenter);
-        String dimensionKey = serverLevel.dimension().location().toString();
-        CacheEntry entry = new CacheEntry(searchCenter, result, System.currentTimeMillis(), dimensionKey);
-        structureCache.put(key, entry);
+        updateCache(serverLevel.dimension(), searchCenter, result, System.currentTimeMillis());
     }
-    
-    /**
-     * 清理过期缓存
-     */
-    public void cleanExpiredCache() {
-        structureCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-    }
-    
+
     /**
-     * 生成区域性搜索键
-     * 将相近位置的搜索归为同一区域，避免重复搜索
-     * 使用更智能的区域判定算法
-     * @param pos 玩家位置
-     * @return 区域性搜索键
+     * 更新缓存，同一搜索区域的旧结果会被替换
+     * @param dimension 维度
+     * @param searchCenter 搜索中心位置
+     * @param result 搜索结果（可能为null）
+     * @param now 当前时间戳
      */
-    public String generateSearchKey(BlockPos pos) {
-        // 检查是否已有进行中的搜索可以复用
-        for (Map.Entry<String, CompletableFuture<BlockPos>> entry : ongoingSearches.entrySet()) {
-            String[] coords = entry.getKey().split(",");
-            try {
-                int existingX = Integer.parseInt(coords[0]);
-                int existingZ = Integer.parseInt(coords[1]);
-                BlockPos existingCenter = new BlockPos(existingX, 0, existingZ);
-                
-                // 如果距离现有搜索中心在区域范围内，使用现有的key
-                double distance = Math.sqrt(pos.distSqr(existingCenter));
-                if (distance <= SearchConfig.SEARCH_REGION_SIZE) {
-                    return entry.getKey();
-                }
-            } catch (NumberFormatException e) {
-                // 忽略解析错误
-            }
+    public synchronized void updateCache(ResourceKey<Level> dimension, BlockPos searchCenter, BlockPos result,
+                                         long now) {
+        expiryWheel.advance(now, this);
+
+        DimensionCache cache = dimensionCaches.computeIfAbsent(dimension, key -> new DimensionCache());
+        int x = searchCenter.getX();
+        int z = searchCenter.getZ();
+        long regionKey = ChunkPos.asLong(
+            Math.floorDiv(x, SearchConfig.SEARCH_REGION_SIZE), Math.floorDiv(z, SearchConfig.SEARCH_REGION_SIZE));
+        long bucketKey = ChunkPos.asLong(
+            Math.floorDiv(x, SearchConfig.CACHE_MOVE_THRESHOLD), Math.floorDiv(z, SearchConfig.CACHE_MOVE_THRESHOLD));
+
+        CacheEntry previous = cache.regions.get(regionKey);
+        if (previous != null) {
+            unlink(previous);
+        }
+
+        CacheEntry entry = new CacheEntry(cache, regionKey, bucketKey, x, z, result,
+            now + SearchConfig.CACHE_EXPIRY_TIME);
+        cache.regions.put(regionKey, entry);
+        cache.buckets.computeIfAbsent(bucketKey, key -> new ArrayList<>(4)).add(entry);
+        appendToTail(entry);
+        expiryWheel.schedule(entry);
+        size++;
+
+        while (size > SearchConfig.MAX_CACHE_ENTRIES && lruHead != null) {
+            unlink(lruHead);
         }
-        
-        // 如果没有可复用的搜索，创建新的区域键
-        // 使用当前位置作为新区域的中心
-        return pos.getX() + "," + pos.getZ();
     }
-    
+
     /**
-     * 获取或注册正在进行的搜索
-     * @param searchKey 搜索键
-     * @return 正在进行的搜索任务，如果不存在则返回null
+     * 清理过期缓存
      */
-    public CompletableFuture<BlockPos> getOngoingSearch(String searchKey) {
-        return ongoingSearches.get(searchKey);
+    public synchronized void cleanExpiredCache() {
+        expiryWheel.advance(System.currentTimeMillis(), this);
     }
-    
+
     /**
-     * 注册一个新的搜索任务
-     * @param searchKey 搜索键
-     * @param searchFuture 搜索Future
+     * 从所有索引中移除条目
      */
-    public void registerSearch(String searchKey, CompletableFuture<BlockPos> searchFuture) {
-        ongoingSearches.put(searchKey, searchFuture);
+    private void unlink(CacheEntry entry) {
+        if (entry.removed) {
+            return;
+        }
+        entry.removed = true;
+
+        DimensionCache cache = entry.owner;
+        if (cache.regions.get(entry.regionKey) == entry) {
+            cache.regions.remove(entry.regionKey);
+        }
+        List<CacheEntry> bucket = cache.buckets.get(entry.bucketKey);
+        if (bucket != null) {
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                cache.buckets.remove(entry.bucketKey);
+            }
+        }
+
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            lruHead = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            lruTail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        size--;
     }
-    
-    /**
-     * 移除一个已完成的搜索任务
-     * @param searchKey 搜索键
-     */
-    public void removeSearch(String searchKey) {
-        ongoingSearches.remove(searchKey);
+
+    private void appendToTail(CacheEntry entry) {
+        entry.prev = lruTail;
+        entry.next = null;
+        if (lruTail != null) {
+            lruTail.next = entry;
+        } else {
+            lruHead = entry;
+        }
+        lruTail = entry;
     }
-    
+
+    private void moveToTail(CacheEntry entry) {
+        if (entry == lruTail) {
+            return;
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            lruHead = entry.next;
+        }
+        entry.next.prev = entry.prev;
+        appendToTail(entry);
+    }
+
     /**
      * 清空所有缓存数据
      */
-    public void clearAll() {
-        structureCache.clear();
-        ongoingSearches.clear();
+    public synchronized void clearAll() {
+        dimensionCaches.clear();
+        expiryWheel.clear();
+        lruHead = null;
+        lruTail = null;
+        size = 0;
     }
 }
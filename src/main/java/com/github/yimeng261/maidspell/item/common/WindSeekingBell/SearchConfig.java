@@ -17,6 +17,9 @@ public class SearchConfig {
     /** 樱花林3×3区域检查半径 */
     public static final int CHERRY_GROVE_CHECK_RADIUS = 2;
     
+    /** 分层预扫描的粗采样间距（区块），樱花林斑块通常远大于此间距 */
+    public static final int COARSE_SCAN_STEP = 16;
+    
     
     // ========== 缓存机制常量 ==========
     
@@ -26,9 +29,21 @@ public class SearchConfig {
     /** 缓存失效的移动阈值（方块）- 约31个区块 */
     public static final int CACHE_MOVE_THRESHOLD = 5000;
     
-    /** 搜索区域大小（方块）- 用于生成searchKey */
+    /** 搜索区域大小（方块）- 用于缓存和搜索进度分区 */
     public static final int SEARCH_REGION_SIZE = 1000;
     
+    /** 缓存最大条目数，超出后按LRU淘汰 */
+    public static final int MAX_CACHE_ENTRIES = 4096;
+    
+    /** 缓存过期时间轮的槽数 */
+    public static final int CACHE_WHEEL_SLOTS = 64;
+    
+    /** 生物群系分类缓存的最大分块数（每块32×32区块，约256字节） */
+    public static final int MAX_BIOME_CACHE_TILES = 65536;
+    
+    /** 生物群系分类缓存每新增多少次采样标记一次待保存 */
+    public static final int BIOME_CACHE_SAVE_BATCH = 16384;
+    
     
     // ========== 多线程搜索配置 ==========
     
@@ -41,6 +56,42 @@ public class SearchConfig {
     /** 每个小方格的大小（区块） */
     public static final int SECTOR_SIZE = 1000;
     
+    /** 同时展开的小方格数量上限，其余线程通过工作窃取分担小方格内的子任务 */
+    public static final int MAX_CONCURRENT_SECTORS = 4;
+    
+    /** 子任务拆分阈值（区块）：矩形的长边不超过此值时不再拆分 */
+    public static final int SPLIT_THRESHOLD = 128;
+    
+    /** 主线程查询位置索引时最多检查的环数，超出后交给异步搜索 */
+    public static final int MAX_INDEX_QUERY_RINGS = 32;
+    
+    /** 持久化搜索进度的最大区域数，超出后淘汰最久未使用的区域 */
+    public static final int MAX_SEARCH_PROGRESS_REGIONS = 1024;
+    
+    /** 单次搜索的超时时间（秒），超时后返回已找到的最近结构 */
+    public static final int SEARCH_TIMEOUT_SECONDS = 600;
+    
+    /** 预计算遍历的超时时间（秒），超时的预计算不写入索引文件 */
+    public static final int PRECOMPUTE_TIMEOUT_SECONDS = 7200;
+    
+    /** 搜索线程等待异步验证时检查搜索是否取消的间隔（毫秒） */
+    public static final long VERIFICATION_POLL_MILLIS = 50;
+    
+    /** 搜索统计保留的最近请求延迟数量 */
+    public static final int METRICS_LATENCY_WINDOW = 128;
+    
+    
+    // ========== 准入控制配置 ==========
+    
+    /** 全服同时进行的搜索数量上限，超出的请求排队等待 */
+    public static final int MAX_CONCURRENT_SEARCHES = 2;
+    
+    /** 同一玩家两次搜索之间的冷却时间（毫秒） */
+    public static final long PLAYER_SEARCH_COOLDOWN = 3000;
+    
+    /** 新请求加入进行中搜索的最大距离（方块），同时作为进行中搜索空间索引的分桶边长 */
+    public static final int SHARED_SEARCH_RADIUS = 1000;
+    
     
     // ========== 常用位置偏移量 ==========
     
@@ -59,6 +110,9 @@ public class SearchConfig {
         return Math.min(MAX_THREADS, Math.max(MIN_THREADS, processors));
     }
     
+    /** 服务器停止时等待搜索线程退出的最长时间（秒） */
+    public static final int EXECUTOR_SHUTDOWN_SECONDS = 5;
+    
     /** 线程名称前缀 */
     public static final String THREAD_NAME_PREFIX = "WindSeekingBell-Search-";
     
@@ -0,0 +1,19 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.HolderSet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.levelgen.structure.Structure;
+
+/**
+ * 单次结构搜索的上下文
+ * 在服务器主线程创建，持有各搜索线程共享的世界数据
+ *
+ * @param level 服务器世界
+ * @param structures 待搜索的结构，注册表中不存在时为null
+ * @param index 持久化位置索引，没有放置网格时为null
+ * @param biomeCache 生物群系分类缓存
+ * @param verifier 起始区块验证器
+ */
+record SearchContext(ServerLevel level, HolderSet<Structure> structures, HiddenRetreatIndex index,
+                     BiomeClassificationCache biomeCache, StructureVerifier verifier) {
+}
@@ -0,0 +1,313 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 最优优先搜索边界
+ * 所有搜索线程共享的小方格优先队列，按小方格到搜索原点的最小距离出队
+ *
+ * 工作原理：
+ * - 小方格环按需展开：只有当下一环的最小距离不超过队首小方格时才将其入队
+ * - 用容量为k的最大堆记录距离原点最近的k个结构，堆满后最小距离不小于第k近结构的小方格和候选点直接剪枝
+ * - 队首小方格被剪枝时，其后所有小方格距离更远，搜索随即结束
+ * - 最终结果是搜索范围内距离原点最近的k个结构，而不是最先完成的小方格中的结构
+ * - 有搜索进度时，小方格布局以原点所在区域的中心为锚点，之前已完整搜索且没有结构的小方格直接跳过
+ * - 其他原点加入搜索时扩大剪枝余量：第k近结构距离原点为b时，搜索完整覆盖半径b+2d，
+ *   距离原点不超过d的任意位置的最近k个结构都在已找到的结构之中
+ */
+final class SearchFrontier {
+
+    /**
+     * 待搜索的小方格，边界已按最大搜索半径裁剪（区块坐标，闭区间）
+     * @param sectorX 小方格X坐标（相对锚点）
+     * @param sectorZ 小方格Z坐标（相对锚点）
+     * @param minDistSqr 小方格内任意方块到搜索原点的最小距离平方
+     * @param complete 小方格未被本次搜索的半径额外裁剪，搜索完成即可记入搜索进度
+     */
+    record Sector(int sectorX, int sectorZ, int minX, int maxX, int minZ, int maxZ, long minDistSqr,
+                  boolean complete) {
+    }
+
+    /**
+     * 已找到的结构
+     * @param pos 结构位置
+     * @param distSqr 到搜索原点的水平距离平方
+     */
+    private record Hit(BlockPos pos, long distSqr) {
+    }
+
+    private final BlockPos origin;
+    private final ChunkPos originChunk;
+    private final ChunkPos centerChunk;
+    private final SearchProgress.Region progress;
+    private final int k;
+    private final int maxRadius;
+    private final int originOffsetChunks;
+    private final int maxRing;
+    private final PriorityQueue<Sector> queue = new PriorityQueue<>(Comparator.comparingLong(Sector::minDistSqr));
+    // 最近的k个结构，堆顶为其中最远的一个
+    private final PriorityQueue<Hit> nearest =
+        new PriorityQueue<>(Comparator.comparingLong(Hit::distSqr).reversed());
+    // 所有已找到的结构，供加入的请求按各自位置重新排序
+    private final List<BlockPos> hits = new ArrayList<>();
+    // 剪枝距离平方，堆满前为Long.MAX_VALUE，搜索线程无锁读取
+    private volatile long pruneDistSqr = Long.MAX_VALUE;
+    // 剪枝余量（方块），只在尚未剪枝时扩大，保证已剪枝的部分不受影响
+    private volatile long slack;
+    private volatile boolean cancelled;
+    private int nextRing;
+
+    /**
+     * @param origin 搜索原点
+     * @param progress 原点所在区域的搜索进度，为null时以原点所在区块为锚点且不跳过任何小方格
+     */
+    SearchFrontier(BlockPos origin, SearchProgress.Region progress) {
+        this(origin, progress, 1, SearchConfig.MAX_SEARCH_RADIUS);
+    }
+
+    /**
+     * @param origin 搜索原点
+     * @param progress 原点所在区域的搜索进度，为null时以原点所在区块为锚点且不跳过任何小方格
+     * @param k 需要的最近结构数量
+     * @param maxRadius 以原点所在区块为中心的最大搜索半径（区块）
+     */
+    SearchFrontier(BlockPos origin, SearchProgress.Region progress, int k, int maxRadius) {
+        this.origin = origin;
+        this.progress = progress;
+        this.k = Math.max(1, k);
+        this.maxRadius = Math.min(maxRadius, SearchConfig.MAX_SEARCH_RADIUS);
+        this.originChunk = new ChunkPos(origin);
+        this.centerChunk = progress != null ? progress.anchor() : originChunk;
+        this.originOffsetChunks = Math.max(Math.abs(originChunk.x - centerChunk.x),
+                                           Math.abs(originChunk.z - centerChunk.z));
+        int radiusRings = (this.maxRadius + originOffsetChunks) / SearchConfig.SECTOR_SIZE + 1;
+        this.maxRing = Math.min(SearchProgress.MAX_RING, radiusRings);
+    }
+
+    int k() {
+        return k;
+    }
+
+    int maxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * 取出距离最近且仍可能改进结果的小方格
+     * @return 下一个待搜索的小方格；已取消或剩余小方格都不可能改进结果时返回null
+     */
+    synchronized Sector poll() {
+        if (cancelled) {
+            return null;
+        }
+
+        Sector next;
+        do {
+            expandRings();
+            next = queue.poll();
+            if (next == null) {
+                return null;
+            }
+        } while (progress != null && progress.isEmpty(next.sectorX(), next.sectorZ()));
+
+        if (next.minDistSqr() >= pruneDistSqr) {
+            // 队首已被剪枝，剩余的小方格只会更远
+            queue.clear();
+            nextRing = maxRing + 1;
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * 展开所有最小距离不超过队首小方格的环
+     */
+    private void expandRings() {
+        while (nextRing <= maxRing && (queue.isEmpty() || ringMinDistSqr(nextRing) <= queue.peek().minDistSqr())) {
+            int ring = nextRing++;
+            if (ring == 0) {
+                enqueue(0, 0);
+                continue;
+            }
+            for (int i = -ring; i < ring; i++) {
+                enqueue(i, ring);
+                enqueue(ring, -i);
+                enqueue(-i, -ring);
+                enqueue(-ring, i);
+            }
+        }
+    }
+
+    /**
+     * 第ring环小方格到搜索原点的最小距离平方的下界
+     */
+    private long ringMinDistSqr(int ring) {
+        long gapChunks = Math.max(0,
+            (long) ring * SearchConfig.SECTOR_SIZE - SearchConfig.SECTOR_SIZE / 2 - 1 - originOffsetChunks);
+        long gapBlocks = gapChunks * 16;
+        return gapBlocks * gapBlocks;
+    }
+
+    private void enqueue(int sectorX, int sectorZ) {
+        int minX = centerChunk.x + sectorX * SearchConfig.SECTOR_SIZE - SearchConfig.SECTOR_SIZE / 2;
+        int maxX = minX + SearchConfig.SECTOR_SIZE - 1;
+        int minZ = centerChunk.z + sectorZ * SearchConfig.SECTOR_SIZE - SearchConfig.SECTOR_SIZE / 2;
+        int maxZ = minZ + SearchConfig.SECTOR_SIZE - 1;
+
+        // 先按固定布局的边界裁剪，各次搜索的小方格因此保持一致
+        minX = Math.max(minX, centerChunk.x - SearchConfig.MAX_SEARCH_RADIUS);
+        maxX = Math.min(maxX, centerChunk.x + SearchConfig.MAX_SEARCH_RADIUS);
+        minZ = Math.max(minZ, centerChunk.z - SearchConfig.MAX_SEARCH_RADIUS);
+        maxZ = Math.min(maxZ, centerChunk.z + SearchConfig.MAX_SEARCH_RADIUS);
+
+        // 再按本次搜索的半径裁剪，被裁剪的小方格不完整，不记入搜索进度
+        int clippedMinX = Math.max(minX, originChunk.x - maxRadius);
+        int clippedMaxX = Math.min(maxX, originChunk.x + maxRadius);
+        int clippedMinZ = Math.max(minZ, originChunk.z - maxRadius);
+        int clippedMaxZ = Math.min(maxZ, originChunk.z + maxRadius);
+        if (clippedMinX > clippedMaxX || clippedMinZ > clippedMaxZ) {
+            return;
+        }
+        boolean complete = clippedMinX == minX && clippedMaxX == maxX && clippedMinZ == minZ && clippedMaxZ == maxZ;
+
+        queue.add(new Sector(sectorX, sectorZ, clippedMinX, clippedMaxX, clippedMinZ, clippedMaxZ,
+            minDistSqr(clippedMinX, clippedMaxX, clippedMinZ, clippedMaxZ), complete));
+    }
+
+    /**
+     * 检查区块中的结构是否可能比当前第k近的结构更近
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 如果需要检查该区块返回true
+     */
+    boolean canImprove(int chunkX, int chunkZ) {
+        return canImprove(chunkX, chunkX, chunkZ, chunkZ);
+    }
+
+    /**
+     * 检查区块矩形（闭区间）中的结构是否可能比当前第k近的结构更近
+     * @return 如果需要搜索该矩形返回true
+     */
+    boolean canImprove(int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ) {
+        return !cancelled && minDistSqr(minChunkX, maxChunkX, minChunkZ, maxChunkZ) < pruneDistSqr;
+    }
+
+    /**
+     * 提交找到的结构，堆满后只有比第k近的结构更近时才会进入堆
+     * 与扩大剪枝余量互斥，保证余量扩大后不会出现按旧余量剪枝的情况
+     * @param pos 结构位置
+     */
+    synchronized void offer(BlockPos pos) {
+        if (hits.contains(pos)) {
+            return;
+        }
+        hits.add(pos);
+
+        long dx = pos.getX() - origin.getX();
+        long dz = pos.getZ() - origin.getZ();
+        long distSqr = dx * dx + dz * dz;
+        if (nearest.size() < k) {
+            nearest.add(new Hit(pos, distSqr));
+        } else if (distSqr < nearest.peek().distSqr()) {
+            nearest.poll();
+            nearest.add(new Hit(pos, distSqr));
+        } else {
+            return;
+        }
+        if (nearest.size() == k) {
+            pruneDistSqr = withSlack(nearest.peek().distSqr());
+        }
+    }
+
+    /**
+     * 在第k近结构的距离上加上剪枝余量
+     */
+    private long withSlack(long distSqr) {
+        long extra = slack;
+        if (extra == 0) {
+            return distSqr;
+        }
+        double bound = Math.sqrt((double) distSqr) + extra;
+        return (long) Math.ceil(bound * bound);
+    }
+
+    /**
+     * 尝试让距离原点distance方块的位置加入本次搜索
+     * 尚未剪枝时扩大剪枝余量；已开始剪枝后只接受当前余量已能覆盖的位置
+     * @param distance 加入位置到搜索原点的水平距离（方块）
+     * @return 如果本次搜索的结果对该位置同样完整返回true
+     */
+    synchronized boolean tryCover(long distance) {
+        if (cancelled) {
+            return false;
+        }
+        long required = 2 * distance;
+        if (required <= slack) {
+            return true;
+        }
+        if (pruneDistSqr != Long.MAX_VALUE) {
+            return false;
+        }
+        slack = required;
+        return true;
+    }
+
+    /**
+     * 检查距离原点distance方块的位置能否加入本次搜索，不修改剪枝余量
+     */
+    synchronized boolean canCover(long distance) {
+        return !cancelled && (2 * distance <= slack || pruneDistSqr == Long.MAX_VALUE);
+    }
+
+    /**
+     * 在小方格搜索完成后调用，若该小方格被完整搜索且没有结构则记入搜索进度
+     * 只有整个搜索尚未找到任何结构时，小方格内的候选点才不会被剪枝，此时搜索完成即代表完整
+     * @param sector 已搜索完成的小方格
+     */
+    synchronized void markEmpty(Sector sector) {
+        if (progress != null && sector.complete() && !cancelled && hits.isEmpty()) {
+            progress.markEmpty(sector.sectorX(), sector.sectorZ());
+        }
+    }
+
+    /**
+     * 取消搜索，正在运行的线程会在下一个候选点处停止
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 获取所有已找到的结构
+     * @return 结构位置的副本，顺序不确定
+     */
+    synchronized List<BlockPos> hits() {
+        return new ArrayList<>(hits);
+    }
+
+    /**
+     * 计算区块矩形（闭区间）内任意方块到搜索原点的最小水平距离平方
+     */
+    long minDistSqr(int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ) {
+        long dx = axisGap(origin.getX(), (long) minChunkX << 4, ((long) maxChunkX << 4) + 15);
+        long dz = axisGap(origin.getZ(), (long) minChunkZ << 4, ((long) maxChunkZ << 4) + 15);
+        return dx * dx + dz * dz;
+    }
+
+    private static long axisGap(long value, long min, long max) {
+        if (value < min) {
+            return min - value;
+        }
+        return value > max ? value - max : 0;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 结构搜索统计
+ * 搜索各环节的计数和耗时累加到无锁的LongAdder中，供调试命令查看，用于调整SearchConfig参数
+ *
+ * 统计内容：
+ * - 计数：完成的请求、启动的遍历、超时、搜索的小方格、枚举的候选、生物群系查询及缓存命中、结构验证
+ * - 耗时：等待结构检查锁、在准入队列中排队、在主线程验证队列中排队
+ * - 延迟：最近 METRICS_LATENCY_WINDOW 次请求从提交到完成的耗时，按区间统计直方图和分位数
+ */
+public final class SearchMetrics {
+
+    public static final SearchMetrics INSTANCE = new SearchMetrics();
+
+    // 延迟直方图的区间上界（毫秒），最后一个区间没有上界
+    private static final long[] HISTOGRAM_BOUNDS = {1_000, 5_000, 15_000, 60_000};
+    private static final String[] HISTOGRAM_LABELS = {"<1s", "1-5s", "5-15s", "15-60s", ">60s"};
+
+    final LongAdder searches = new LongAdder();
+    final LongAdder traversals = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder sectorsVisited = new LongAdder();
+    final LongAdder candidatesEnumerated = new LongAdder();
+    final LongAdder biomeLookups = new LongAdder();
+    final LongAdder biomeCacheHits = new LongAdder();
+    final LongAdder verifications = new LongAdder();
+    final LongAdder lockWaitNanos = new LongAdder();
+    final LongAdder admissionWaitNanos = new LongAdder();
+    final LongAdder verificationQueueWaitNanos = new LongAdder();
+
+    // 最近若干次请求的延迟（毫秒），环形缓冲
+    private final long[] latencies = new long[SearchConfig.METRICS_LATENCY_WINDOW];
+    private int latencyCount;
+    private int latencyNext;
+
+    private SearchMetrics() {
+    }
+
+    /**
+     * 记录一次完成的请求
+     * @param latencyNanos 从提交到完成的耗时（纳秒）
+     */
+    void recordSearch(long latencyNanos) {
+        searches.increment();
+        synchronized (latencies) {
+            latencies[latencyNext] = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            latencyNext = (latencyNext + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+    }
+
+    /**
+     * 生成统计报告
+     * @return 报告的各行文本
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        long searchCount = searches.sum();
+        long traversalCount = traversals.sum();
+        long lookups = biomeLookups.sum();
+
+        lines.add(String.format("请求: %d，遍历: %d，超时: %d", searchCount, traversalCount, timeouts.sum()));
+        lines.add(String.format("小方格: %d（每次遍历 %.1f）",
+            sectorsVisited.sum(), perTraversal(sectorsVisited, traversalCount)));
+        lines.add(String.format("候选区块: %d（每次遍历 %.1f）",
+            candidatesEnumerated.sum(), perTraversal(candidatesEnumerated, traversalCount)));
+        lines.add(String.format("生物群系查询: %d，缓存命中率: %.1f%%",
+            lookups, lookups > 0 ? 100.0 * biomeCacheHits.sum() / lookups : 0.0));
+        lines.add(String.format("结构验证: %d（每次遍历 %.1f）",
+            verifications.sum(), perTraversal(verifications, traversalCount)));
+        lines.add(String.format("等待结构检查锁: %d ms，准入排队: %d ms，主线程验证排队: %d ms",
+            TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.sum()),
+            TimeUnit.NANOSECONDS.toMillis(admissionWaitNanos.sum()),
+            TimeUnit.NANOSECONDS.toMillis(verificationQueueWaitNanos.sum())));
+
+        long[] window;
+        synchronized (latencies) {
+            window = Arrays.copyOf(latencies, latencyCount);
+        }
+        if (window.length == 0) {
+            lines.add("延迟: 暂无数据");
+            return lines;
+        }
+
+        Arrays.sort(window);
+        lines.add(String.format("最近 %d 次延迟: p50 %d ms，p90 %d ms，p99 %d ms，最大 %d ms",
+            window.length, percentile(window, 0.50), percentile(window, 0.90), percentile(window, 0.99),
+            window[window.length - 1]));
+
+        int[] histogram = new int[HISTOGRAM_LABELS.length];
+        for (long latency : window) {
+            int bucket = 0;
+            while (bucket < HISTOGRAM_BOUNDS.length && latency >= HISTOGRAM_BOUNDS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+        StringBuilder builder = new StringBuilder("延迟分布:");
+        for (int i = 0; i < histogram.length; i++) {
+            builder.append(' ').append(HISTOGRAM_LABELS[i]).append('=').append(histogram[i]);
+        }
+        lines.add(builder.toString());
+        return lines;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        for (LongAdder adder : new LongAdder[]{searches, traversals, timeouts, sectorsVisited, candidatesEnumerated,
+                biomeLookups, biomeCacheHits, verifications, lockWaitNanos, admissionWaitNanos,
+                verificationQueueWaitNanos}) {
+            adder.reset();
+        }
+        synchronized (latencies) {
+            latencyCount = 0;
+            latencyNext = 0;
+        }
+    }
+
+    private static double perTraversal(LongAdder adder, long traversalCount) {
+        return traversalCount > 0 ? (double) adder.sum() / traversalCount : 0.0;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
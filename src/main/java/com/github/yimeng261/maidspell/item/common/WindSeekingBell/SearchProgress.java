@@ -0,0 +1,232 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 搜索进度存储
+ * 按搜索原点所在区域持久化已完整搜索且没有结构的小方格，之后在同一区域摇铃时从上次停下的位置继续
+ *
+ * 工作原理：
+ * - 同一区域（SEARCH_REGION_SIZE×SEARCH_REGION_SIZE方块）内发起的搜索共用以区域中心为锚点的小方格布局
+ * - 小方格搜索完成且整个搜索尚未找到任何结构时，说明该小方格被完整搜索，记入区域位图
+ * - 只记录放置网格逐个验证且没有验证失败的小方格；粗采样和步进搜索的结论是近似的，不记录
+ * - 之后的搜索跳过位图中的小方格，多次失败的搜索逐步向外推进，而不是每次从头开始
+ * - 区域在第一次记入空小方格时才加入存档，只摇过铃而没有记录的区域不占用存档空间
+ * - 区域数超过 MAX_SEARCH_PROGRESS_REGIONS 时淘汰最久未使用的区域；最近使用时间随下一次保存写入，本身不触发保存
+ * - 世界种子、放置规则或小方格布局变化时清空
+ */
+public class SearchProgress extends SavedData {
+
+    private static final String DATA_NAME = "touhou_little_maid_spell_search_progress";
+
+    /** 小方格环数上限，与搜索边界一致 */
+    static final int MAX_RING = (SearchConfig.MAX_SEARCH_RADIUS + SearchConfig.SECTOR_SIZE - 1) / SearchConfig.SECTOR_SIZE;
+    private static final int SIDE = 2 * MAX_RING + 1;
+    private static final int WORDS_PER_REGION = (SIDE * SIDE + Long.SIZE - 1) / Long.SIZE;
+
+    private final Map<Long, Region> regions = new ConcurrentHashMap<>();
+    private volatile long seed;
+    private volatile long fingerprint;
+    private volatile long layout;
+
+    /**
+     * 单个区域的搜索进度
+     */
+    public final class Region {
+        private final long[] emptySectors = new long[WORDS_PER_REGION];
+        private volatile long lastUsed;
+        private final long key;
+        private final int anchorChunkX;
+        private final int anchorChunkZ;
+
+        private Region(int regionX, int regionZ) {
+            this.key = ChunkPos.asLong(regionX, regionZ);
+            int half = SearchConfig.SEARCH_REGION_SIZE / 2;
+            this.anchorChunkX = (regionX * SearchConfig.SEARCH_REGION_SIZE + half) >> 4;
+            this.anchorChunkZ = (regionZ * SearchConfig.SEARCH_REGION_SIZE + half) >> 4;
+        }
+
+        /**
+         * 小方格布局的锚点区块，即区域中心所在区块
+         */
+        public ChunkPos anchor() {
+            return new ChunkPos(anchorChunkX, anchorChunkZ);
+        }
+
+        /**
+         * 检查小方格是否已被完整搜索且没有结构
+         * @param sectorX 小方格X坐标（相对锚点）
+         * @param sectorZ 小方格Z坐标（相对锚点）
+         */
+        public synchronized boolean isEmpty(int sectorX, int sectorZ) {
+            int bit = bitIndex(sectorX, sectorZ);
+            return bit >= 0 && (emptySectors[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        /**
+         * 记录小方格已被完整搜索且没有结构，区域尚未加入存档时先加入
+         */
+        public void markEmpty(int sectorX, int sectorZ) {
+            int bit = bitIndex(sectorX, sectorZ);
+            if (bit < 0) {
+                return;
+            }
+            synchronized (this) {
+                emptySectors[bit >>> 6] |= 1L << bit;
+            }
+            Region stored = regions.get(key);
+            if (stored == null) {
+                // 区域尚未加入存档，或已被淘汰、清空
+                stored = attach(this);
+            }
+            if (stored != this) {
+                // 同一区域的另一个搜索先加入了存档，记录写到已存档的区域上
+                synchronized (stored) {
+                    stored.emptySectors[bit >>> 6] |= 1L << bit;
+                }
+            }
+            setDirty();
+        }
+    }
+
+    private static int bitIndex(int sectorX, int sectorZ) {
+        if (Math.abs(sectorX) > MAX_RING || Math.abs(sectorZ) > MAX_RING) {
+            return -1;
+        }
+        return (sectorX + MAX_RING) * SIDE + (sectorZ + MAX_RING);
+    }
+
+    private SearchProgress() {
+    }
+
+    /**
+     * 获取世界的搜索进度，必须在服务器主线程调用
+     * @param level 服务器世界
+     * @param grid 当前世界的放置网格，没有时为null
+     * @return 与当前世界种子和放置规则匹配的搜索进度
+     */
+    public static SearchProgress get(ServerLevel level, PlacementGrid grid) {
+        SearchProgress progress = level.getDataStorage().computeIfAbsent(
+            new SavedData.Factory<>(SearchProgress::new, SearchProgress::load, null), DATA_NAME);
+        long currentFingerprint = grid != null ? grid.fingerprint() : 0L;
+        long currentLayout = currentLayout();
+        if (progress.seed != level.getSeed() || progress.fingerprint != currentFingerprint
+            || progress.layout != currentLayout) {
+            progress.regions.clear();
+            progress.seed = level.getSeed();
+            progress.fingerprint = currentFingerprint;
+            progress.layout = currentLayout;
+            progress.setDirty();
+        }
+        return progress;
+    }
+
+    /**
+     * 小方格布局参数的摘要，任一参数变化时旧进度不再适用
+     */
+    private static long currentLayout() {
+        long hash = SearchConfig.SECTOR_SIZE;
+        hash = 31L * hash + SearchConfig.MAX_SEARCH_RADIUS;
+        hash = 31L * hash + SearchConfig.SEARCH_REGION_SIZE;
+        hash = 31L * hash + SearchConfig.SEARCH_STEP;
+        hash = 31L * hash + SearchConfig.COARSE_SCAN_STEP;
+        return hash;
+    }
+
+    /**
+     * 获取搜索原点所在区域的进度，必须在服务器主线程调用
+     * 存档中没有该区域时返回一个尚未加入存档的空区域，第一次记入空小方格时才加入
+     * @param origin 搜索原点
+     * @return 区域进度
+     */
+    public Region region(BlockPos origin) {
+        int regionX = Math.floorDiv(origin.getX(), SearchConfig.SEARCH_REGION_SIZE);
+        int regionZ = Math.floorDiv(origin.getZ(), SearchConfig.SEARCH_REGION_SIZE);
+
+        Region region = regions.get(ChunkPos.asLong(regionX, regionZ));
+        if (region == null) {
+            region = new Region(regionX, regionZ);
+        }
+        // 只更新淘汰顺序，不单独触发保存
+        region.lastUsed = System.currentTimeMillis();
+        return region;
+    }
+
+    /**
+     * 将区域加入存档的区域表
+     * @return 存档中该区域的实例；其他搜索已先加入同一区域时返回已有的实例
+     */
+    private synchronized Region attach(Region region) {
+        Region existing = regions.get(region.key);
+        if (existing != null) {
+            return existing;
+        }
+        evictIfFull();
+        regions.put(region.key, region);
+        return region;
+    }
+
+    private void evictIfFull() {
+        while (regions.size() >= SearchConfig.MAX_SEARCH_PROGRESS_REGIONS) {
+            regions.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .ifPresent(entry -> regions.remove(entry.getKey()));
+        }
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider registries) {
+        LongArrayList keys = new LongArrayList(regions.size());
+        LongArrayList lastUsed = new LongArrayList(regions.size());
+        LongArrayList sectors = new LongArrayList(regions.size() * WORDS_PER_REGION);
+
+        for (Map.Entry<Long, Region> entry : regions.entrySet()) {
+            Region region = entry.getValue();
+            keys.add(entry.getKey().longValue());
+            lastUsed.add(region.lastUsed);
+            synchronized (region) {
+                sectors.addElements(sectors.size(), region.emptySectors);
+            }
+        }
+
+        tag.putLong("seed", seed);
+        tag.putLong("fingerprint", fingerprint);
+        tag.putLong("layout", layout);
+        tag.putLongArray("regions", keys.toLongArray());
+        tag.putLongArray("lastUsed", lastUsed.toLongArray());
+        tag.putLongArray("sectors", sectors.toLongArray());
+        return tag;
+    }
+
+    private static SearchProgress load(CompoundTag tag, HolderLookup.Provider registries) {
+        SearchProgress progress = new SearchProgress();
+        progress.seed = tag.getLong("seed");
+        progress.fingerprint = tag.getLong("fingerprint");
+        progress.layout = tag.getLong("layout");
+
+        long[] keys = tag.getLongArray("regions");
+        long[] lastUsed = tag.getLongArray("lastUsed");
+        long[] sectors = tag.getLongArray("sectors");
+        if (lastUsed.length != keys.length || sectors.length != keys.length * WORDS_PER_REGION) {
+            return progress; // 数据损坏，重新搜索
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            Region region = progress.new Region(ChunkPos.getX(keys[i]), ChunkPos.getZ(keys[i]));
+            region.lastUsed = lastUsed[i];
+            System.arraycopy(sectors, i * WORDS_PER_REGION, region.emptySectors, 0, WORDS_PER_REGION);
+            progress.regions.put(keys[i], region);
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+/**
+ * 步进螺旋游标
+ * 以小方格中心为起点，按步长逐环向外枚举矩形范围内的候选区块
+ *
+ * 工作原理：
+ * - 在步长空间中遍历：第k环的点为中心偏移(i*step, j*step)且max(|i|,|j|)=k
+ * - 每环分为上、右、下、左四条边，每条边长2k，首尾相接且互不重叠，因此每个点恰好访问一次
+ * - 不需要已访问集合，游标只保存环号、边号和边上位置，遍历过程不分配任何对象
+ */
+final class StepSpiral {
+
+    private final int centerX;
+    private final int centerZ;
+    private final int step;
+    private final int minX;
+    private final int maxX;
+    private final int minZ;
+    private final int maxZ;
+    private final int maxRing;
+
+    private int ring = -1;
+    private int side;
+    private int offset;
+    private int x;
+    private int z;
+
+    /**
+     * @param minX 最小区块X（含）
+     * @param maxX 最大区块X（含）
+     * @param minZ 最小区块Z（含）
+     * @param maxZ 最大区块Z（含）
+     * @param step 步长（区块）
+     */
+    StepSpiral(int minX, int maxX, int minZ, int maxZ, int step) {
+        this(minX, maxX, minZ, maxZ, step, (minX + maxX) / 2, (minZ + maxZ) / 2);
+    }
+
+    /**
+     * 以给定锚点对齐步长网格，使相邻矩形的候选区块落在同一网格上
+     * @param minX 最小区块X（含）
+     * @param maxX 最大区块X（含）
+     * @param minZ 最小区块Z（含）
+     * @param maxZ 最大区块Z（含）
+     * @param step 步长（区块）
+     * @param anchorX 步长网格锚点X
+     * @param anchorZ 步长网格锚点Z
+     */
+    StepSpiral(int minX, int maxX, int minZ, int maxZ, int step, int anchorX, int anchorZ) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+        this.step = step;
+        this.centerX = anchorX + Math.floorDiv((minX + maxX) / 2 - anchorX, step) * step;
+        this.centerZ = anchorZ + Math.floorDiv((minZ + maxZ) / 2 - anchorZ, step) * step;
+        int reach = Math.max(Math.max(maxX - centerX, centerX - minX), Math.max(maxZ - centerZ, centerZ - minZ));
+        this.maxRing = reach / step;
+    }
+
+    /**
+     * 前进到下一个位于范围内的候选区块
+     * @return 如果还有候选区块返回true
+     */
+    boolean next() {
+        while (advance()) {
+            if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean advance() {
+        if (ring < 0) {
+            ring = 0;
+            x = centerX;
+            z = centerZ;
+            return true;
+        }
+
+        if (ring == 0 || ++offset == 2 * ring) {
+            offset = 0;
+            if (ring == 0 || ++side == 4) {
+                side = 0;
+                if (++ring > maxRing) {
+                    return false;
+                }
+            }
+        }
+
+        int k = ring;
+        int t = offset;
+        int i;
+        int j;
+        switch (side) {
+            case 0 -> { i = -k + t; j = k; }  // 上边：从左到右
+            case 1 -> { i = k; j = k - t; }   // 右边：从上到下
+            case 2 -> { i = k - t; j = -k; }  // 下边：从右到左
+            default -> { i = -k; j = -k + t; } // 左边：从下到上
+        }
+        x = centerX + i * step;
+        z = centerZ + j * step;
+        return true;
+    }
+
+    /**
+     * 当前候选区块X坐标
+     */
+    int x() {
+        return x;
+    }
+
+    /**
+     * 当前候选区块Z坐标
+     */
+    int z() {
+        return z;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
 
+import com.github.yimeng261.maidspell.Config;
 import com.github.yimeng261.maidspell.Global;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
@@ -9,14 +10,19 @@ import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.levelgen.structure.Structure;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 结构搜索引擎
@@ -34,367 +40,719 @@ public class StructureSearchEngine {
     private static volatile HolderSet<Structure> cachedStructureSet = null;
     private static final Object STRUCTURE_SET_LOCK = new Object();
 
-    // 结构检查分段锁
-    private static final StripedLock STRUCTURE_CHECK_LOCK = new StripedLock(SearchConfig.LOCK_STRIPE_COUNT);
+    // 放置网格缓存：按维度延迟初始化，Optional.empty()表示该维度只能退回步进搜索
+    private static final Map<ResourceKey<Level>, Optional<PlacementGrid>> PLACEMENT_GRIDS = new ConcurrentHashMap<>();
 
-    // 线程池
-    private static final ThreadPoolExecutor SEARCH_EXECUTOR = (ThreadPoolExecutor) Executors.newFixedThreadPool(
-        SearchConfig.getRecommendedThreadPoolSize(),
-        r -> {
-            Thread t = new Thread(r, SearchConfig.THREAD_NAME_PREFIX + System.currentTimeMillis());
-            t.setDaemon(true);
-            t.setPriority(SearchConfig.THREAD_PRIORITY);
-            return t;
-        }
-    );
+    // 工作窃取线程池：随服务器启动创建、停止时关闭，小方格被递归拆分为子任务，空闲线程从繁忙线程处窃取
+    private static volatile ForkJoinPool searchPool;
+
+    // 正在进行的搜索边界，服务器停止时统一取消
+    private static final Set<SearchFrontier> ACTIVE_FRONTIERS = ConcurrentHashMap.newKeySet();
+
+    // 进行中搜索的空间索引，附近的新请求订阅已有搜索而不是重新搜索
+    private static final InFlightSearchRegistry IN_FLIGHT = new InFlightSearchRegistry();
+
+    // 预计算索引缓存：按维度延迟读取，Optional.empty()表示该维度没有可用的预计算文件
+    private static final Map<ResourceKey<Level>, Optional<PrecomputedStructureIndex>> PRECOMPUTED =
+        new ConcurrentHashMap<>();
+
+    // 同一时间只允许一次预计算
+    private static final AtomicBoolean PRECOMPUTING = new AtomicBoolean();
 
     private final BiomeValidator biomeValidator;
+    private final StructureValidityPredictor validityPredictor;
     private final SearchCacheManager cacheManager;
 
-    public StructureSearchEngine(BiomeValidator biomeValidator, SearchCacheManager cacheManager) {
+    public StructureSearchEngine(BiomeValidator biomeValidator, StructureValidityPredictor validityPredictor,
+                                 SearchCacheManager cacheManager) {
         this.biomeValidator = biomeValidator;
+        this.validityPredictor = validityPredictor;
         this.cacheManager = cacheManager;
     }
 
     /**
-     * 异步并行搜索隐世之境结构
+     * 从持久化位置索引中查询最近的结构，必须在服务器主线程调用
+     * @param level 服务器世界
+     * @param playerPos 玩家位置
+     * @return 查询结果；索引未覆盖足够区域时返回未确定
+     */
+    public HiddenRetreatIndex.QueryResult queryIndex(ServerLevel level, BlockPos playerPos) {
+        HiddenRetreatIndex index = getIndex(level);
+        if (index == null) {
+            return HiddenRetreatIndex.QueryResult.unresolved();
+        }
+        return index.findNearest(playerPos, SearchConfig.MAX_SEARCH_RADIUS);
+    }
+
+    /**
+     * 从预计算索引文件中查询最近的结构，必须在服务器主线程调用
+     * @param level 服务器世界
+     * @param playerPos 玩家位置
+     * @return 查询结果；没有预计算文件或位置超出其覆盖范围时返回未确定
+     */
+    public HiddenRetreatIndex.QueryResult queryPrecomputed(ServerLevel level, BlockPos playerPos) {
+        PrecomputedStructureIndex precomputed = PRECOMPUTED.computeIfAbsent(level.dimension(), key -> {
+            PlacementGrid grid = getOrInitPlacementGrid(level);
+            return Optional.ofNullable(PrecomputedStructureIndex.open(
+                PrecomputedStructureIndex.path(level.getServer(), key), level.getSeed(),
+                grid != null ? grid.fingerprint() : 0L));
+        }).orElse(null);
+        if (precomputed == null) {
+            return HiddenRetreatIndex.QueryResult.unresolved();
+        }
+        return precomputed.findNearest(playerPos);
+    }
+
+    /**
+     * 预计算以世界出生点为中心、指定半径内的所有隐世之境并写入预计算索引文件，必须在服务器主线程调用
+     * 复用最优优先搜索的放置网格、生物群系和验证逻辑，但不剪枝、不与玩家的搜索共享
+     * @param level 服务器世界
+     * @param radius 覆盖半径（区块），不超过 MAX_SEARCH_RADIUS
+     * @return 写入的结构数量；已有预计算在进行、遍历被取消或超时时异常完成
+     */
+    public CompletableFuture<Integer> precompute(ServerLevel level, int radius) {
+        ForkJoinPool pool = searchPool;
+        if (pool == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Search executor is not running"));
+        }
+        if (!PRECOMPUTING.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A precompute is already running"));
+        }
+
+        int coverRadius = Math.max(0, Math.min(radius, SearchConfig.MAX_SEARCH_RADIUS));
+        BlockPos center = level.getSharedSpawnPos();
+        PlacementGrid grid = getOrInitPlacementGrid(level);
+        long seed = level.getSeed();
+        long fingerprint = grid != null ? grid.fingerprint() : 0L;
+        Path path = PrecomputedStructureIndex.path(level.getServer(), level.dimension());
+        ResourceKey<Level> dimension = level.dimension();
+
+        SearchContext context = new SearchContext(level, getOrInitStructureSet(level), getIndex(level),
+            BiomeClassificationCache.get(level), StructureVerifier.of(Config.structureVerificationBackend));
+        // 容量不限的最近结构堆永远不会填满，遍历不剪枝
+        SearchFrontier frontier = new SearchFrontier(center,
+            SearchProgress.get(level, grid).region(center), Integer.MAX_VALUE, coverRadius);
+        CompletableFuture<List<BlockPos>> traversal;
+        try {
+            traversal = startTraversal(context, frontier, SearchConfig.PRECOMPUTE_TIMEOUT_SECONDS, pool);
+        } catch (RejectedExecutionException e) {
+            PRECOMPUTING.set(false);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return traversal.thenApply(hits -> {
+            // 被取消或超时的遍历不完整，写入会让查询返回错误的最近结构
+            if (frontier.isCancelled()) {
+                throw new CancellationException("Precompute did not finish");
+            }
+            List<BlockPos> structures = nearestTo(hits, center, Integer.MAX_VALUE, coverRadius);
+            try {
+                PrecomputedStructureIndex.write(path, seed, fingerprint, new ChunkPos(center), coverRadius, structures);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            // 下次查询时重新读取新文件
+            PRECOMPUTED.remove(dimension);
+            Global.LOGGER.info("WindSeekingBell: Precomputed {} structures within {} chunks of {}",
+                structures.size(), coverRadius, center);
+            return structures.size();
+        }).whenComplete((count, throwable) -> PRECOMPUTING.set(false));
+    }
+
+    /**
+     * 异步并行搜索隐世之境结构，必须在服务器主线程调用
      * @param level 服务器世界
      * @param playerPos 玩家位置
      * @return 搜索结果的CompletableFuture
      */
     public CompletableFuture<BlockPos> searchAsync(ServerLevel level, BlockPos playerPos) {
-        // 1. 首先检查缓存
+        // 首先检查缓存
         SearchCacheManager.CacheCheckResult cacheResult = cacheManager.checkCache(level, playerPos);
         if (cacheResult.hasCache) {
             return CompletableFuture.completedFuture(cacheResult.structurePos);
         }
 
-        // 2. 检查是否已有相同区域的搜索在进行
-        String searchKey = cacheManager.generateSearchKey(playerPos);
-        CompletableFuture<BlockPos> existingSearch = cacheManager.getOngoingSearch(searchKey);
-        if (existingSearch != null) {
-            return existingSearch;
-        }
-
-        // 3. 启动新的异步搜索
-        CompletableFuture<BlockPos> searchFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                return searchParallel(level, playerPos);
-            } catch (Exception e) {
-                Global.LOGGER.error("Structure search failed", e);
-                return null;
+        CompletableFuture<List<BlockPos>> nearest = searchNearest(level, playerPos, 1, SearchConfig.MAX_SEARCH_RADIUS);
+        CompletableFuture<BlockPos> result = nearest.thenApply(hits -> hits.isEmpty() ? null : hits.get(0));
+        // 取消单个结果时同时取消订阅
+        result.whenComplete((pos, throwable) -> {
+            if (throwable instanceof CancellationException) {
+                nearest.cancel(false);
             }
-        }, SEARCH_EXECUTOR).whenComplete((result, throwable) -> {
-            cacheManager.removeSearch(searchKey);
         });
-
-        cacheManager.registerSearch(searchKey, searchFuture);
-        return searchFuture;
+        return result;
     }
 
     /**
-     * 并行搜索隐世之境结构
+     * 异步搜索距离原点最近的k个隐世之境结构，必须在服务器主线程调用
+     * 一次环形遍历收集最多k个已确认的结构，堆满后按第k近结构的距离剪枝，代价与单个结构的搜索相近
+     * @param level 服务器世界
+     * @param origin 搜索原点
+     * @param k 需要的结构数量
+     * @param maxRadius 以原点所在区块为中心的最大搜索半径（区块），不超过 MAX_SEARCH_RADIUS
+     * @return 按距离从近到远排列的结构位置，最多k个
      */
-    private BlockPos searchParallel(ServerLevel level, BlockPos playerPos) {
-        // 1. 首先检查缓存
-        SearchCacheManager.CacheCheckResult cacheResult = cacheManager.checkCache(level, playerPos);
-        if (cacheResult.hasCache) {
-            return cacheResult.structurePos;
+    public CompletableFuture<List<BlockPos>> searchNearest(ServerLevel level, BlockPos origin, int k, int maxRadius) {
+        ForkJoinPool pool = searchPool;
+        if (pool == null || k <= 0) {
+            // 服务器尚未启动或正在停止
+            return CompletableFuture.completedFuture(List.of());
         }
+        maxRadius = Math.min(maxRadius, SearchConfig.MAX_SEARCH_RADIUS);
 
-        ChunkPos playerChunk = new ChunkPos(playerPos);
+        // 1. 附近已有进行中的搜索时订阅该搜索
+        InFlightSearchRegistry.InFlightSearch existing = IN_FLIGHT.join(level.dimension(), origin, k, maxRadius);
+        if (existing != null) {
+            return subscribe(level, existing, origin, k, maxRadius);
+        }
 
-        // 2. 执行并行搜索
-        BlockPos result = parallelSquareSearch(level, playerChunk);
+        // 2. 启动新的异步搜索，持久化数据需在主线程获取
+        SearchContext context = new SearchContext(level, getOrInitStructureSet(level), getIndex(level),
+            BiomeClassificationCache.get(level), StructureVerifier.of(Config.structureVerificationBackend));
+        SearchFrontier frontier = new SearchFrontier(origin,
+            SearchProgress.get(level, getOrInitPlacementGrid(level)).region(origin), k, maxRadius);
+        CompletableFuture<List<BlockPos>> traversal;
+        try {
+            traversal = startTraversal(context, frontier, SearchConfig.SEARCH_TIMEOUT_SECONDS, pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(List.of());
+        }
 
-        // 3. 将结果加入缓存
-        cacheManager.updateCache(level, playerPos, result);
+        InFlightSearchRegistry.InFlightSearch search =
+            IN_FLIGHT.register(level.dimension(), origin, frontier, traversal);
+        traversal.whenComplete((hits, throwable) -> IN_FLIGHT.remove(search));
 
-        return result;
+        return subscribe(level, search, origin, k, maxRadius);
     }
 
     /**
-     * 多线程并行小方格螺旋搜索
+     * 在线程池中启动一次最优优先遍历
+     * 遍历的Future被取消时通知搜索线程尽快退出
      */
-    private BlockPos parallelSquareSearch(ServerLevel level, ChunkPos centerChunk) {
-        int availableThreads = SearchConfig.getRecommendedThreadPoolSize();
+    private CompletableFuture<List<BlockPos>> startTraversal(SearchContext context, SearchFrontier frontier,
+                                                             int timeoutSeconds, ForkJoinPool pool) {
+        CompletableFuture<List<BlockPos>> traversal = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bestFirstSearch(context, frontier, timeoutSeconds);
+            } catch (Exception e) {
+                Global.LOGGER.error("Structure search failed", e);
+                return List.of();
+            }
+        }, pool);
+
+        SearchMetrics.INSTANCE.traversals.increment();
+        ACTIVE_FRONTIERS.add(frontier);
+        traversal.whenComplete((hits, throwable) -> {
+            ACTIVE_FRONTIERS.remove(frontier);
+            if (throwable instanceof CancellationException) {
+                // 所有订阅者都已取消，通知搜索线程尽快退出
+                frontier.cancel();
+            }
+        });
+        return traversal;
+    }
 
-        Global.LOGGER.debug("Starting parallel search with {} threads, radius: {}",
-                           availableThreads, SearchConfig.MAX_SEARCH_RADIUS);
+    /**
+     * 检查该位置的请求能否加入进行中的搜索，必须在服务器主线程调用
+     * 加入已有搜索不会启动新的搜索线程
+     */
+    public boolean canJoinInFlightSearch(ServerLevel level, BlockPos playerPos) {
+        return IN_FLIGHT.canJoin(level.dimension(), playerPos, 1, SearchConfig.MAX_SEARCH_RADIUS);
+    }
 
-        int maxSectorLayer = (SearchConfig.MAX_SEARCH_RADIUS + SearchConfig.SECTOR_SIZE - 1) / SearchConfig.SECTOR_SIZE;
+    /**
+     * 订阅进行中的搜索，结果按订阅者自己的位置重新排序
+     * 订阅者取消时只取消自己的订阅，所有订阅者都取消后才取消搜索本身
+     */
+    private CompletableFuture<List<BlockPos>> subscribe(ServerLevel level,
+                                                        InFlightSearchRegistry.InFlightSearch search,
+                                                        BlockPos origin, int k, int maxRadius) {
+        CompletableFuture<List<BlockPos>> result = search.traversal().thenApply(hits -> {
+            List<BlockPos> nearest = nearestTo(hits, origin, k, maxRadius);
+            // 被取消或超时的搜索结果不完整，不缓存；缓存只记录完整半径内的最近结构
+            if (!search.frontier().isCancelled() && maxRadius >= SearchConfig.MAX_SEARCH_RADIUS) {
+                cacheManager.updateCache(level, origin, nearest.isEmpty() ? null : nearest.get(0));
+            }
+            return nearest;
+        });
+        result.whenComplete((nearest, throwable) -> {
+            if (throwable instanceof CancellationException && IN_FLIGHT.release(search)) {
+                search.traversal().cancel(false);
+            }
+        });
+        return result;
+    }
 
-        for (int sectorLayer = 0; sectorLayer <= maxSectorLayer; sectorLayer++) {
-            BlockPos result = searchSectorLayerParallel(level, centerChunk, sectorLayer, availableThreads);
-            if (result != null) {
-                return result;
+    /**
+     * 从已找到的结构中选出距离原点最近且在搜索半径内的k个
+     */
+    private static List<BlockPos> nearestTo(List<BlockPos> hits, BlockPos origin, int k, int maxRadius) {
+        int originChunkX = origin.getX() >> 4;
+        int originChunkZ = origin.getZ() >> 4;
+        List<BlockPos> candidates = new ArrayList<>(hits.size());
+        for (BlockPos hit : hits) {
+            if (Math.abs((hit.getX() >> 4) - originChunkX) <= maxRadius
+                && Math.abs((hit.getZ() >> 4) - originChunkZ) <= maxRadius) {
+                candidates.add(hit);
             }
         }
-
-        return null;
+        candidates.sort(Comparator.comparingLong(hit -> {
+            long dx = hit.getX() - origin.getX();
+            long dz = hit.getZ() - origin.getZ();
+            return dx * dx + dz * dz;
+        }));
+        return candidates.size() > k ? List.copyOf(candidates.subList(0, k)) : candidates;
     }
 
     /**
-     * 多线程并行搜索指定小方格层
+     * 创建搜索线程池，在服务器启动时调用
      */
-    private BlockPos searchSectorLayerParallel(ServerLevel level, ChunkPos centerChunk, int sectorLayer,
-                                               int availableThreads) {
-        if (sectorLayer == 0) {
-            return searchSectorComplete(level, centerChunk, 0, 0, 0);
+    public static synchronized void startExecutor() {
+        MainThreadStructureVerifier.INSTANCE.start();
+        if (searchPool == null) {
+            searchPool = new ForkJoinPool(
+                SearchConfig.getRecommendedThreadPoolSize(),
+                pool -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    t.setName(SearchConfig.THREAD_NAME_PREFIX + t.getPoolIndex());
+                    t.setDaemon(true);
+                    t.setPriority(SearchConfig.THREAD_PRIORITY);
+                    // 默认工厂使用系统类加载器，改为模组类加载器
+                    t.setContextClassLoader(StructureSearchEngine.class.getClassLoader());
+                    return t;
+                },
+                null,
+                false
+            );
         }
+    }
 
-        List<int[]> sectorCoords = generateSectorCoordinates(sectorLayer);
-        List<CompletableFuture<BlockPos>> sectorTasks = new ArrayList<>();
-        AtomicReference<BlockPos> foundInLayer = new AtomicReference<>(null);
-        AtomicBoolean layerComplete = new AtomicBoolean(false);
-
-        for (int i = 0; i < sectorCoords.size(); i++) {
-            final int[] coords = sectorCoords.get(i);
-            final int sectorIndex = i;
-            final int sectorX = coords[0];
-            final int sectorZ = coords[1];
-
-            CompletableFuture<BlockPos> sectorTask = CompletableFuture.supplyAsync(() ->
-                searchSectorWithTermination(level, centerChunk, sectorX, sectorZ, layerComplete, sectorIndex),
-                SEARCH_EXECUTOR);
-
-            sectorTasks.add(sectorTask);
+    /**
+     * 取消所有正在进行的搜索并关闭线程池，在服务器停止时调用
+     * 避免搜索线程在集成服务器重新加载世界后继续访问旧世界
+     */
+    public static synchronized void stopExecutor() {
+        ForkJoinPool pool = searchPool;
+        searchPool = null;
+        if (pool == null) {
+            return;
         }
 
+        for (SearchFrontier frontier : ACTIVE_FRONTIERS) {
+            frontier.cancel();
+        }
+        // 主线程即将停止处理验证队列，取消其中的候选，等待验证的搜索线程随即退出
+        MainThreadStructureVerifier.INSTANCE.shutdown();
+        pool.shutdown();
         try {
-            CompletableFuture<BlockPos> monitorTask = CompletableFuture.supplyAsync(() -> {
-                try {
-                    while (foundInLayer.get() == null && !areAllTasksCompleted(sectorTasks)) {
-                        Thread.sleep(50);
-
-                        for (CompletableFuture<BlockPos> task : sectorTasks) {
-                            if (task.isDone() && !task.isCancelled()) {
-                                try {
-                                    BlockPos result = task.get();
-                                    if (result != null && foundInLayer.compareAndSet(null, result)) {
-                                        layerComplete.set(true);
-                                        return result;
-                                    }
-                                } catch (Exception e) {
-                                    // 忽略单个任务的异常
-                                }
-                            }
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-                return foundInLayer.get();
-            });
-
-            BlockPos result = monitorTask.get(120, TimeUnit.SECONDS);
-
-            if (result != null) {
-                sectorTasks.forEach(task -> task.cancel(true));
-            } else {
-                CompletableFuture.allOf(sectorTasks.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            if (!pool.awaitTermination(SearchConfig.EXECUTOR_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                Global.LOGGER.warn("WindSeekingBell: Search threads did not stop in time");
+                pool.shutdownNow();
             }
-
-            return result;
-
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            sectorTasks.forEach(task -> task.cancel(true));
-            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
         }
+        ACTIVE_FRONTIERS.clear();
+        IN_FLIGHT.clear();
+        // 被强制关闭的线程池可能不再完成预计算的Future
+        PRECOMPUTING.set(false);
     }
 
-    private boolean areAllTasksCompleted(List<CompletableFuture<BlockPos>> tasks) {
-        return tasks.stream().allMatch(CompletableFuture::isDone);
-    }
-
-    private List<int[]> generateSectorCoordinates(int layer) {
-        List<int[]> coords = new ArrayList<>();
+    /**
+     * 多线程最优优先搜索
+     * 若干领取线程从共享的搜索边界按距离顺序领取小方格，找到结构后更远的小方格和候选点被剪枝
+     * 每个小方格递归拆分为子任务，其余线程通过工作窃取参与，近处的环也能占满所有核心
+     * 必须在搜索线程池中调用
+     * @param timeoutSeconds 超时时间（秒），超时后返回已找到的结构
+     * @return 所有已找到的结构，由各订阅者按自己的位置选出最近的一个
+     */
+    private List<BlockPos> bestFirstSearch(SearchContext context, SearchFrontier frontier, int timeoutSeconds) {
+        int parallelism = ForkJoinTask.getPool().getParallelism();
+        int drainers = Math.min(parallelism, SearchConfig.MAX_CONCURRENT_SECTORS);
 
-        if (layer == 0) {
-            coords.add(new int[]{0, 0});
-            return coords;
-        }
+        Global.LOGGER.debug("Starting best-first search with {} threads, radius: {}",
+                           parallelism, frontier.maxRadius());
 
-        for (int x = -layer; x <= layer; x++) {
-            coords.add(new int[]{x, layer});
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[drainers - 1];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = ForkJoinTask.adapt(() -> drainFrontier(context, frontier)).fork();
         }
 
-        for (int z = layer - 1; z >= -layer; z--) {
-            coords.add(new int[]{layer, z});
+        try {
+            // 当前线程也参与领取
+            drainFrontier(context, frontier);
+            for (ForkJoinTask<?> task : tasks) {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            frontier.cancel();
+        } catch (TimeoutException e) {
+            Global.LOGGER.warn("Structure search timed out, returning the nearest result found so far");
+            SearchMetrics.INSTANCE.timeouts.increment();
+            // 通知仍在运行的线程尽快退出
+            frontier.cancel();
+        } catch (ExecutionException | CancellationException e) {
+            Global.LOGGER.debug("Best-first search did not finish cleanly", e);
+            frontier.cancel();
         }
 
-        for (int x = layer - 1; x >= -layer; x--) {
-            coords.add(new int[]{x, -layer});
-        }
+        return frontier.hits();
+    }
 
-        for (int z = -layer + 1; z <= layer - 1; z++) {
-            coords.add(new int[]{-layer, z});
+    /**
+     * 不断从搜索边界领取小方格并搜索，直到边界耗尽或被剪枝
+     */
+    private void drainFrontier(SearchContext context, SearchFrontier frontier) {
+        SearchFrontier.Sector sector;
+        while ((sector = frontier.poll()) != null) {
+            SearchMetrics.INSTANCE.sectorsVisited.increment();
+            try {
+                searchSectorComplete(context, frontier, sector);
+            } catch (Exception e) {
+                // 单个小方格的异常视为无结果
+                Global.LOGGER.debug("Sector search failed", e);
+            }
         }
-
-        return coords;
     }
 
-    private BlockPos searchSectorWithTermination(ServerLevel level, ChunkPos centerChunk, int sectorX, int sectorZ,
-                                                 AtomicBoolean layerComplete, int sectorIndex) {
-        if (layerComplete.get()) {
-            return null;
+    /**
+     * 完整搜索单个小方格，找到的结构提交到搜索边界
+     * 只有放置网格逐个验证了所有候选区块、且没有验证失败时，才把小方格记为已确认为空：
+     * 粗采样和步进搜索会跳过候选点，验证失败可能只是暂时的，记为空会让之后的搜索和预计算永久跳过其中的结构
+     */
+    private void searchSectorComplete(SearchContext context, SearchFrontier frontier, SearchFrontier.Sector sector) {
+        // 有放置网格时只枚举合法的结构起始区块
+        PlacementGrid grid = getOrInitPlacementGrid(context.level());
+        CoarseBiomeMask coarseMask = null;
+        if (grid == null) {
+            // 分层预扫描：先粗采样整个小方格，没有樱花林迹象的小方格直接跳过
+            coarseMask = CoarseBiomeMask.scan(context, biomeValidator,
+                sector.minX(), sector.maxX(), sector.minZ(), sector.maxZ(), frontier);
+            if (coarseMask == null || coarseMask.isEmpty()) {
+                return;
+            }
         }
 
-        return searchSectorComplete(level, centerChunk, sectorX, sectorZ, sectorIndex);
+        // 步进搜索的候选区块以小方格中心为锚点对齐，保证各子任务的步长网格一致
+        int anchorX = (sector.minX() + sector.maxX()) / 2;
+        int anchorZ = (sector.minZ() + sector.maxZ()) / 2;
+        AtomicBoolean incomplete = new AtomicBoolean();
+        new RegionTask(context, frontier, grid, coarseMask, incomplete, anchorX, anchorZ,
+            sector.minX(), sector.maxX(), sector.minZ(), sector.maxZ()).invoke();
+        if (grid != null && !incomplete.get()) {
+            frontier.markEmpty(sector);
+        }
     }
 
-    private BlockPos searchSectorComplete(ServerLevel level, ChunkPos centerChunk, int sectorX, int sectorZ,
-                                          int sectorIndex) {
-        int sectorStartX = centerChunk.x + sectorX * SearchConfig.SECTOR_SIZE - SearchConfig.SECTOR_SIZE / 2;
-        int sectorEndX = sectorStartX + SearchConfig.SECTOR_SIZE - 1;
-        int sectorStartZ = centerChunk.z + sectorZ * SearchConfig.SECTOR_SIZE - SearchConfig.SECTOR_SIZE / 2;
-        int sectorEndZ = sectorStartZ + SearchConfig.SECTOR_SIZE - 1;
+    /**
+     * 小方格子任务
+     * 矩形长边超过拆分阈值时沿长边一分为二：较远的一半交给其他线程窃取，较近的一半由当前线程继续处理
+     * 不可能比当前最优结果更近的矩形直接剪枝
+     */
+    private final class RegionTask extends RecursiveAction {
+        private final SearchContext context;
+        private final SearchFrontier frontier;
+        private final PlacementGrid grid;
+        private final CoarseBiomeMask coarseMask;
+        private final AtomicBoolean incomplete;
+        private final int anchorX;
+        private final int anchorZ;
+        private final int minX;
+        private final int maxX;
+        private final int minZ;
+        private final int maxZ;
+
+        RegionTask(SearchContext context, SearchFrontier frontier, PlacementGrid grid, CoarseBiomeMask coarseMask,
+                   AtomicBoolean incomplete, int anchorX, int anchorZ, int minX, int maxX, int minZ, int maxZ) {
+            this.context = context;
+            this.frontier = frontier;
+            this.grid = grid;
+            this.coarseMask = coarseMask;
+            this.incomplete = incomplete;
+            this.anchorX = anchorX;
+            this.anchorZ = anchorZ;
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minZ = minZ;
+            this.maxZ = maxZ;
+        }
 
-        sectorStartX = Math.max(sectorStartX, centerChunk.x - SearchConfig.MAX_SEARCH_RADIUS);
-        sectorEndX = Math.min(sectorEndX, centerChunk.x + SearchConfig.MAX_SEARCH_RADIUS);
-        sectorStartZ = Math.max(sectorStartZ, centerChunk.z - SearchConfig.MAX_SEARCH_RADIUS);
-        sectorEndZ = Math.min(sectorEndZ, centerChunk.z + SearchConfig.MAX_SEARCH_RADIUS);
+        @Override
+        protected void compute() {
+            if (!frontier.canImprove(minX, maxX, minZ, maxZ)) {
+                return;
+            }
 
-        int sectorWidth = sectorEndX - sectorStartX + 1;
-        int sectorHeight = sectorEndZ - sectorStartZ + 1;
-        BitSet sectorChecked = new BitSet(sectorWidth * sectorHeight);
+            int width = maxX - minX + 1;
+            int height = maxZ - minZ + 1;
+            if (Math.max(width, height) <= SearchConfig.SPLIT_THRESHOLD) {
+                searchLeaf();
+                return;
+            }
 
-        ChunkPos sectorCenter = new ChunkPos((sectorStartX + sectorEndX) / 2, (sectorStartZ + sectorEndZ) / 2);
-        int sectorRadius = Math.max(sectorWidth, sectorHeight) / 2;
+            RegionTask first;
+            RegionTask second;
+            if (width >= height) {
+                int mid = minX + width / 2;
+                first = split(minX, mid - 1, minZ, maxZ);
+                second = split(mid, maxX, minZ, maxZ);
+            } else {
+                int mid = minZ + height / 2;
+                first = split(minX, maxX, minZ, mid - 1);
+                second = split(minX, maxX, mid, maxZ);
+            }
 
-        for (int layer = 0; layer <= sectorRadius; layer += SearchConfig.SEARCH_STEP) {
-            BlockPos result = searchSectorLayer(level, sectorCenter, layer, sectorStartX, sectorEndX,
-                                              sectorStartZ, sectorEndZ, sectorChecked);
-            if (result != null) {
-                return result;
+            RegionTask near = first;
+            RegionTask far = second;
+            if (frontier.minDistSqr(second.minX, second.maxX, second.minZ, second.maxZ)
+                < frontier.minDistSqr(first.minX, first.maxX, first.minZ, first.maxZ)) {
+                near = second;
+                far = first;
             }
+
+            far.fork();
+            near.compute();
+            far.join();
         }
 
-        return null;
-    }
+        private RegionTask split(int minX, int maxX, int minZ, int maxZ) {
+            return new RegionTask(context, frontier, grid, coarseMask, incomplete,
+                anchorX, anchorZ, minX, maxX, minZ, maxZ);
+        }
 
-    private BlockPos searchSectorLayer(ServerLevel level, ChunkPos sectorCenter, int layer,
-                                     int minX, int maxX, int minZ, int maxZ,
-                                     BitSet sectorChecked) {
-        if (layer == 0) {
-            if (isInSectorBounds(sectorCenter, minX, maxX, minZ, maxZ)) {
-                if (!isSectorChunkChecked(sectorCenter, minX, minZ, sectorChecked, maxX - minX + 1)) {
-                    setSectorChunkChecked(sectorCenter, minX, minZ, sectorChecked, maxX - minX + 1);
-                    return checkPotentialCenter(level, sectorCenter);
-                }
+        private void searchLeaf() {
+            if (grid != null) {
+                searchSectorPlacement(context, frontier, grid, incomplete, minX, maxX, minZ, maxZ);
+                return;
             }
-            return null;
-        }
 
-        for (int x = -layer; x <= layer; x += SearchConfig.SEARCH_STEP) {
-            ChunkPos candidate = new ChunkPos(sectorCenter.x + x, sectorCenter.z + layer);
-            if (isInSectorBounds(candidate, minX, maxX, minZ, maxZ)) {
-                if (!isSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1)) {
-                    setSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1);
-                BlockPos result = checkPotentialCenter(level, candidate);
-                if (result != null) return result;
+            // 步进螺旋本身不会重复访问区块，无需已访问集合
+            StepSpiral spiral = new StepSpiral(minX, maxX, minZ, maxZ, SearchConfig.SEARCH_STEP, anchorX, anchorZ);
+            List<CompletableFuture<?>> pending = null;
+            while (spiral.next()) {
+                if (frontier.isCancelled()) {
+                    return;
+                }
+                SearchMetrics.INSTANCE.candidatesEnumerated.increment();
+                CompletableFuture<?> verification =
+                    checkPotentialCenter(context, frontier, coarseMask, spiral.x(), spiral.z());
+                if (verification != null) {
+                    pending = addPending(pending, verification, incomplete);
                 }
             }
+            awaitVerifications(pending, frontier, incomplete);
         }
+    }
+
+    /**
+     * 按放置网格搜索矩形区域
+     * 从矩形中心的网格单元开始逐环向外枚举，每个网格单元只验证其唯一的候选起始区块
+     * 候选区块不在本矩形内的网格单元由相邻矩形负责，避免重复验证
+     * 不可能比当前最优结果更近的候选区块直接跳过
+     * 位置索引中已有结论的网格单元直接复用，新的结论写回索引
+     * 通过生物群系初筛的候选区块先经有效性预测器排除，只有可能生成结构的区块才进行完整验证
+     * 异步验证的候选在枚举结束后统一等待，保证返回时矩形已搜索完整
+     * 有验证失败时设置incomplete，矩形的结论不完整
+     */
+    private void searchSectorPlacement(SearchContext context, SearchFrontier frontier, PlacementGrid grid,
+                                       AtomicBoolean incomplete, int minX, int maxX, int minZ, int maxZ) {
+        HiddenRetreatIndex index = context.index();
+        int minCellX = grid.cellOf(minX);
+        int maxCellX = grid.cellOf(maxX);
+        int minCellZ = grid.cellOf(minZ);
+        int maxCellZ = grid.cellOf(maxZ);
+        int centerCellX = (minCellX + maxCellX) / 2;
+        int centerCellZ = (minCellZ + maxCellZ) / 2;
+        int cellRadius = Math.max(maxCellX - minCellX, maxCellZ - minCellZ) / 2 + 1;
+        List<CompletableFuture<?>> pending = null;
+
+        for (int ring = 0; ring <= cellRadius; ring++) {
+            for (int dz = -ring; dz <= ring; dz++) {
+                int cellZ = centerCellZ + dz;
+                if (cellZ < minCellZ || cellZ > maxCellZ) continue;
+
+                // 环的上下两边完整遍历，中间各行只取左右两端
+                int stepX = (ring == 0 || Math.abs(dz) == ring) ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring; dx += stepX) {
+                    int cellX = centerCellX + dx;
+                    if (cellX < minCellX || cellX > maxCellX) continue;
+                    if (frontier.isCancelled()) return;
+
+                    ChunkPos candidate = grid.candidateChunk(cellX, cellZ);
+                    if (!isInSectorBounds(candidate, minX, maxX, minZ, maxZ)
+                        || !frontier.canImprove(candidate.x, candidate.z)) {
+                        continue;
+                    }
+                    SearchMetrics.INSTANCE.candidatesEnumerated.increment();
+
+                    if (index != null) {
+                        HiddenRetreatIndex.CellState state = index.getState(cellX, cellZ);
+                        if (state == HiddenRetreatIndex.CellState.START) {
+                            frontier.offer(index.getStart(cellX, cellZ));
+                            continue;
+                        }
+                        if (state == HiddenRetreatIndex.CellState.EMPTY) {
+                            continue;
+                        }
+                    }
+
+                    if (!grid.isStartChunk(candidate)
+                        || !biomeValidator.validateCherryGroveRegion(context.level(), context.biomeCache(), candidate)
+                        || !validityPredictor.mayGenerate(context, candidate)) {
+                        if (index != null) {
+                            index.record(cellX, cellZ, null);
+                        }
+                        continue;
+                    }
 
-        for (int z = layer - SearchConfig.SEARCH_STEP; z >= -layer; z -= SearchConfig.SEARCH_STEP) {
-            ChunkPos candidate = new ChunkPos(sectorCenter.x + layer, sectorCenter.z + z);
-            if (isInSectorBounds(candidate, minX, maxX, minZ, maxZ)) {
-                if (!isSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1)) {
-                    setSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1);
-                BlockPos result = checkPotentialCenter(level, candidate);
-                if (result != null) return result;
+                    CompletableFuture<Void> verification = verifyStartChunk(context, frontier, grid, candidate)
+                        .thenAccept(result -> {
+                            validityPredictor.recordVerification(result != null);
+                            if (index != null) {
+                                index.record(cellX, cellZ, result);
+                            }
+                            if (result != null) {
+                                frontier.offer(result);
+                            }
+                        });
+                    pending = addPending(pending, verification, incomplete);
                 }
             }
         }
+        awaitVerifications(pending, frontier, incomplete);
+    }
 
-        for (int x = layer - SearchConfig.SEARCH_STEP; x >= -layer; x -= SearchConfig.SEARCH_STEP) {
-            ChunkPos candidate = new ChunkPos(sectorCenter.x + x, sectorCenter.z - layer);
-            if (isInSectorBounds(candidate, minX, maxX, minZ, maxZ)) {
-                if (!isSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1)) {
-                    setSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1);
-                BlockPos result = checkPotentialCenter(level, candidate);
-                if (result != null) return result;
-                }
+    /**
+     * 记录尚未完成的验证；已经失败的验证直接标记结论不完整
+     */
+    private static List<CompletableFuture<?>> addPending(List<CompletableFuture<?>> pending,
+                                                         CompletableFuture<?> verification, AtomicBoolean incomplete) {
+        if (verification.isDone()) {
+            if (verification.isCompletedExceptionally()) {
+                incomplete.set(true);
             }
+            return pending;
         }
+        if (pending == null) {
+            pending = new ArrayList<>();
+        }
+        pending.add(verification);
+        return pending;
+    }
 
-        for (int z = -layer + SearchConfig.SEARCH_STEP; z <= layer - SearchConfig.SEARCH_STEP; z += SearchConfig.SEARCH_STEP) {
-            ChunkPos candidate = new ChunkPos(sectorCenter.x - layer, sectorCenter.z + z);
-            if (isInSectorBounds(candidate, minX, maxX, minZ, maxZ)) {
-                if (!isSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1)) {
-                    setSectorChunkChecked(candidate, minX, minZ, sectorChecked, maxX - minX + 1);
-                BlockPos result = checkPotentialCenter(level, candidate);
-                if (result != null) return result;
+    /**
+     * 等待尚未完成的异步验证，搜索被取消时提前返回
+     * 在搜索线程上等待时线程池会补偿阻塞的线程
+     * 验证失败或等待被中断时设置incomplete
+     */
+    private static void awaitVerifications(List<CompletableFuture<?>> pending, SearchFrontier frontier,
+                                           AtomicBoolean incomplete) {
+        if (pending == null) {
+            return;
+        }
+        for (CompletableFuture<?> verification : pending) {
+            while (true) {
+                try {
+                    verification.get(SearchConfig.VERIFICATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (frontier.isCancelled()) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    incomplete.set(true);
+                    return;
+                } catch (ExecutionException | CancellationException e) {
+                    // 验证失败视为本次搜索无结果，但不能作为小方格为空的依据
+                    incomplete.set(true);
+                    break;
                 }
             }
         }
-
-        return null;
     }
 
     private boolean isInSectorBounds(ChunkPos pos, int minX, int maxX, int minZ, int maxZ) {
         return pos.x >= minX && pos.x <= maxX && pos.z >= minZ && pos.z <= maxZ;
     }
 
-    private boolean isSectorChunkChecked(ChunkPos chunk, int sectorMinX, int sectorMinZ, BitSet sectorChecked, int sectorWidth) {
-        int x = chunk.x - sectorMinX;
-        int z = chunk.z - sectorMinZ;
-        if (x < 0 || z < 0 || x >= sectorWidth) return true;
-
-        int index = z * sectorWidth + x;
-        return index >= 0 && index < sectorChecked.size() && sectorChecked.get(index);
-    }
-
-    private void setSectorChunkChecked(ChunkPos chunk, int sectorMinX, int sectorMinZ, BitSet sectorChecked, int sectorWidth) {
-        int x = chunk.x - sectorMinX;
-        int z = chunk.z - sectorMinZ;
-        if (x < 0 || z < 0 || x >= sectorWidth) return;
-
-        int index = z * sectorWidth + x;
-        if (index >= 0 && index < sectorChecked.size()) {
-            sectorChecked.set(index);
+    /**
+     * 检查步进搜索的候选点
+     * @return 验证的Future，候选点未通过筛选时返回null
+     */
+    private CompletableFuture<?> checkPotentialCenter(SearchContext context, SearchFrontier frontier,
+                                                      CoarseBiomeMask coarseMask, int chunkX, int chunkZ) {
+        // 不可能比当前最优结果更近，或所在粗分块没有樱花林迹象，跳过细化检查
+        if (!frontier.canImprove(chunkX, chunkZ) || !coarseMask.mayContainCherryGrove(chunkX, chunkZ)) {
+            return null;
         }
-    }
 
-    private BlockPos checkPotentialCenter(ServerLevel level, ChunkPos centerChunk) {
-        if (!biomeValidator.validateCherryGroveRegion(level, centerChunk)) {
+        ChunkPos centerChunk = new ChunkPos(chunkX, chunkZ);
+        if (!biomeValidator.validateCherryGroveRegion(context.level(), context.biomeCache(), centerChunk)) {
             return null;
         }
 
-        return verifyStructureExists(level, centerChunk);
+        return verifyStructureExists(context, frontier, centerChunk, 1).thenAccept(result -> {
+            if (result != null) {
+                frontier.offer(result);
+            }
+        });
     }
 
-    private BlockPos verifyStructureExists(ServerLevel level, ChunkPos chunk) {
+    /**
+     * 使用配置的验证后端验证放置网格的候选起始区块
+     * 验证失败或被取消时返回的Future异常完成，不记入位置索引
+     */
+    private CompletableFuture<BlockPos> verifyStartChunk(SearchContext context, SearchFrontier frontier,
+                                                         PlacementGrid grid, ChunkPos candidate) {
+        SearchMetrics.INSTANCE.verifications.increment();
+        CompletableFuture<BlockPos> verification;
         try {
-            HolderSet<Structure> structureSet = getOrInitStructureSet(level);
-            if (structureSet == null) {
-                return null;
+            verification = context.verifier().verifyAsync(context, grid, candidate, frontier::isCancelled);
+        } catch (Exception e) {
+            verification = CompletableFuture.failedFuture(e);
+        }
+        return verification.whenComplete((result, throwable) -> {
+            if (throwable != null && !isCancellation(throwable)) {
+                Global.LOGGER.debug("Structure verification failed at {}", candidate, throwable);
             }
+        });
+    }
 
-            BlockPos chunkCenter = new BlockPos(
-                chunk.getMinBlockX() + SearchConfig.CHUNK_CENTER_OFFSET,
-                SearchConfig.DEFAULT_STRUCTURE_Y,
-                chunk.getMinBlockZ() + SearchConfig.CHUNK_CENTER_OFFSET
-            );
-
-            return STRUCTURE_CHECK_LOCK.executeWithLock(level, () -> {
-                var result = level.getChunkSource().getGenerator().findNearestMapStructure(
-                    level,
-                    structureSet,
-                    chunkCenter,
-                    1,
-                    false
-                );
-                return result != null ? result.getFirst() : null;
-            });
+    /**
+     * 验证区块附近是否确实存在结构
+     * @param context 搜索上下文
+     * @param frontier 搜索边界
+     * @param chunk 待验证区块
+     * @param searchRadius 以网格单元计的验证半径，0表示只检查区块所在的网格单元
+     * @return 结构位置的Future，不存在时结果为null；验证失败或被取消时异常完成
+     */
+    private CompletableFuture<BlockPos> verifyStructureExists(SearchContext context, SearchFrontier frontier,
+                                                              ChunkPos chunk, int searchRadius) {
+        SearchMetrics.INSTANCE.verifications.increment();
+        CompletableFuture<BlockPos> verification;
+        try {
+            verification = context.verifier().findNearbyAsync(context, chunk, searchRadius, frontier::isCancelled);
         } catch (Exception e) {
-            synchronized (STRUCTURE_SET_LOCK) {
-                cachedStructureSet = null;
-            }
-            Global.LOGGER.debug("Structure verification failed, cache cleared", e);
-            return null;
+            verification = CompletableFuture.failedFuture(e);
         }
+        return verification.whenComplete((result, throwable) -> {
+            if (throwable != null && !isCancellation(throwable)) {
+                synchronized (STRUCTURE_SET_LOCK) {
+                    cachedStructureSet = null;
+                }
+                Global.LOGGER.debug("Structure verification failed, cache cleared", throwable);
+            }
+        });
+    }
+
+    private static boolean isCancellation(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        return cause instanceof CancellationException;
     }
 
     private static HolderSet<Structure> getOrInitStructureSet(ServerLevel level) {
@@ -416,6 +774,23 @@ public class StructureSearchEngine {
         return cachedStructureSet;
     }
 
+    /**
+     * 获取世界的持久化位置索引，必须在服务器主线程调用
+     * 没有放置网格或结构不可用时返回null，此时搜索结果不会被持久化
+     */
+    private static HiddenRetreatIndex getIndex(ServerLevel level) {
+        PlacementGrid grid = getOrInitPlacementGrid(level);
+        if (grid == null || getOrInitStructureSet(level) == null) {
+            return null;
+        }
+        return HiddenRetreatIndex.get(level, grid);
+    }
+
+    private static PlacementGrid getOrInitPlacementGrid(ServerLevel level) {
+        return PLACEMENT_GRIDS.computeIfAbsent(level.dimension(),
+            key -> Optional.ofNullable(PlacementGrid.create(level))).orElse(null);
+    }
+
     /**
      * 清空缓存
      */
@@ -423,5 +798,8 @@ public class StructureSearchEngine {
         synchronized (STRUCTURE_SET_LOCK) {
             cachedStructureSet = null;
         }
+        PLACEMENT_GRIDS.clear();
+        PRECOMPUTED.clear();
+        BiomeClassificationCache.clearAll();
     }
 }
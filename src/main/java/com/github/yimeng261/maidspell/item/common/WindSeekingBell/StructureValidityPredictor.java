@@ -0,0 +1,122 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import com.github.yimeng261.maidspell.Global;
+import com.github.yimeng261.maidspell.worldgen.structure.HeightSampleCache;
+import com.github.yimeng261.maidspell.worldgen.structure.HiddenRetreatStructure;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.ChunkGenerator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 结构有效性预测器
+ * 在昂贵的结构验证之前，按HiddenRetreatStructure的生成规则廉价地排除不可能生成结构的起始区块
+ *
+ * 工作原理：
+ * - 生物群系：检查完整的5×5区块，与结构生成时的判定一致，结果从分类缓存读取
+ * - 地形：每个区块只取结构生成时的第一个高度采样点（相同的确定性随机源），直接查询噪声高度，不访问区块
+ * - 部分样本的离差平方和不超过全部样本的离差平方和，除以全部样本数即为完整方差的下界，
+ *   下界已超过 MAX_TERRAIN_VARIANCE 时完整检查必然失败，因此不会误判真正可以生成的位置
+ * - 统计通过预测但实际验证失败的候选（误报），用于评估预测器的效果
+ */
+public class StructureValidityPredictor {
+
+    private static final int RANGE = HiddenRetreatStructure.CHECK_RANGE;
+    private static final int SIDE = 2 * RANGE + 1;
+    // 完整检查的样本总数
+    private static final int TOTAL_SAMPLES = SIDE * SIDE * HiddenRetreatStructure.SAMPLES_PER_CHUNK;
+    // 部分样本离差平方和的上限，超过后完整方差必然超过阈值
+    private static final double MAX_PARTIAL_M2 = HiddenRetreatStructure.MAX_TERRAIN_VARIANCE * TOTAL_SAMPLES;
+
+    // 统计数据
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder rejectedByBiome = new LongAdder();
+    private final LongAdder rejectedByTerrain = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * 预测结构能否在候选起始区块生成
+     * @param context 搜索上下文
+     * @param startChunk 候选起始区块
+     * @return 如果结构可能生成返回true；返回false时结构一定不会生成
+     */
+    public boolean mayGenerate(SearchContext context, ChunkPos startChunk) {
+        evaluated.increment();
+        ServerLevel level = context.level();
+
+        // 1. 完整的5×5生物群系检查
+        for (int dx = -RANGE; dx <= RANGE; dx++) {
+            for (int dz = -RANGE; dz <= RANGE; dz++) {
+                int chunkX = startChunk.x + dx;
+                int chunkZ = startChunk.z + dz;
+                boolean cherry = context.biomeCache() != null
+                    ? context.biomeCache().isCherryGrove(level, chunkX, chunkZ)
+                    : BiomeClassificationCache.sampleCherryGrove(level, chunkX, chunkZ);
+                if (!cherry) {
+                    rejectedByBiome.increment();
+                    return false;
+                }
+            }
+        }
+
+        // 2. 稀疏高度采样，Welford算法逐点累积离差平方和
+        try {
+            ChunkGenerator generator = level.getChunkSource().getGenerator();
+            // 与结构生成共享采样缓存，通过预测的候选在完整验证时无需重新计算这些采样点
+            HeightSampleCache heightCache = HeightSampleCache.get(level.getChunkSource().randomState());
+            int count = 0;
+            double mean = 0;
+            double m2 = 0;
+            for (int dx = -RANGE; dx <= RANGE; dx++) {
+                for (int dz = -RANGE; dz <= RANGE; dz++) {
+                    // 与HiddenRetreatStructure.isValidGenerationLocation中每个区块的第一个采样点相同
+                    int height = heightCache.sample(generator, level, startChunk.x + dx, startChunk.z + dz, 0);
+
+                    count++;
+                    double delta = height - mean;
+                    mean += delta / count;
+                    m2 += delta * (height - mean);
+                    if (m2 > MAX_PARTIAL_M2) {
+                        rejectedByTerrain.increment();
+                        return false;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 采样失败时不做判断，交给完整验证
+            Global.LOGGER.debug("Terrain prediction failed at {}", startChunk, e);
+        }
+        return true;
+    }
+
+    /**
+     * 记录通过预测的候选的实际验证结果
+     * @param found 实际验证是否找到结构
+     */
+    public void recordVerification(boolean found) {
+        if (found) {
+            confirmed.increment();
+        } else {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * 输出统计数据，在服务器停止时调用
+     */
+    public void logStats() {
+        long total = evaluated.sum();
+        if (total == 0) {
+            return;
+        }
+        long falsePositiveCount = falsePositives.sum();
+        long passed = confirmed.sum() + falsePositiveCount;
+        Global.LOGGER.debug(
+            "WindSeekingBell predictor: {} evaluated, {} rejected by biome, {} rejected by terrain, "
+                + "{} confirmed, {} false positives ({}%)",
+            total, rejectedByBiome.sum(), rejectedByTerrain.sum(), confirmed.sum(), falsePositiveCount,
+            passed > 0 ? String.format("%.1f", 100.0 * falsePositiveCount / passed) : "0.0");
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 结构起始区块验证器
+ * 放置网格模式下，判断网格单元的候选起始区块上是否确实会生成结构
+ */
+public interface StructureVerifier {
+
+    /**
+     * 验证后端
+     */
+    enum Backend {
+        /** 经由世界共享的StructureCheck验证，同一世界的验证互斥执行 */
+        LOCKED,
+        /** 每次验证在调用线程上独立构造生成上下文，无需任何锁 */
+        CONFINED,
+        /** 搜索线程只做筛选，验证由服务器主线程在每tick的时间预算内执行 */
+        MAIN_THREAD
+    }
+
+    /**
+     * 验证候选起始区块
+     * @param context 搜索上下文
+     * @param grid 放置网格
+     * @param startChunk 满足放置规则的候选起始区块
+     * @return 结构定位位置，不会生成结构时返回null
+     */
+    BlockPos verify(SearchContext context, PlacementGrid grid, ChunkPos startChunk);
+
+    /**
+     * 异步验证候选起始区块，默认在调用线程上同步完成
+     * @param context 搜索上下文
+     * @param grid 放置网格
+     * @param startChunk 满足放置规则的候选起始区块
+     * @param cancelled 所属搜索是否已取消，已取消时可以不再验证并取消返回的Future
+     * @return 结构定位位置的Future，不会生成结构时结果为null
+     */
+    default CompletableFuture<BlockPos> verifyAsync(SearchContext context, PlacementGrid grid, ChunkPos startChunk,
+                                                    BooleanSupplier cancelled) {
+        return CompletableFuture.completedFuture(verify(context, grid, startChunk));
+    }
+
+    /**
+     * 异步查找区块附近的结构，供没有放置网格的步进搜索使用
+     * 默认在调用线程上经由加锁的StructureCheck同步完成
+     * @param context 搜索上下文
+     * @param chunk 待验证区块
+     * @param searchRadius 以网格单元计的验证半径
+     * @param cancelled 所属搜索是否已取消
+     * @return 结构位置的Future，不存在时结果为null
+     */
+    default CompletableFuture<BlockPos> findNearbyAsync(SearchContext context, ChunkPos chunk, int searchRadius,
+                                                        BooleanSupplier cancelled) {
+        return CompletableFuture.completedFuture(LockedStructureVerifier.INSTANCE.findNearby(context, chunk, searchRadius));
+    }
+
+    /**
+     * 获取指定后端的验证器
+     */
+    static StructureVerifier of(Backend backend) {
+        return switch (backend) {
+            case LOCKED -> LockedStructureVerifier.INSTANCE;
+            case MAIN_THREAD -> MainThreadStructureVerifier.INSTANCE;
+            default -> ConfinedStructureVerifier.INSTANCE;
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.github.yimeng261.maidspell.item.common.WindSeekingBell;
 
 import com.github.yimeng261.maidspell.Global;
 import com.github.yimeng261.maidspell.entity.WindSeekingBellEntity;
+import com.github.yimeng261.maidspell.worldgen.structure.HiddenRetreatStructure;
 import net.minecraft.ChatFormatting;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.ClickEvent;
@@ -17,12 +18,15 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Rarity;
 import net.minecraft.world.item.TooltipFlag;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.levelgen.Heightmap;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
 import net.neoforged.neoforge.event.server.ServerStartedEvent;
 import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nonnull;
@@ -32,25 +36,39 @@ import java.util.List;
  * 寻风之铃 - 用于寻找最近的隐世之境结构
  * 功能模仿末影之眼，成功找到结构后播放铃声音效
  * 性能优化说明：
- * 1. 采用基于Main算法的简化螺旋搜索，避免OptimizedWhitePoleFinder的复杂数据结构开销
- * 2. 针对hidden_retreat极稀少特性（1万格以上），使用大步长(4)减少无效检测
- * 3. 直接按距离层遍历，每层检查边界点，找到第一个符合条件的立即返回
- * 4. 简化3×3樱花林验证逻辑：检查中心+四角+四边中点，通过后直接验证结构
- * 5. 减少Minecraft API调用次数，每个候选点最多9次生物群系检测+1次结构验证
- * 6. 使用BitSet避免重复检测，类似C++中的bitvec，以O(1)时间复杂度记录已检测区块
- * 7. BitSet内存开销低：对于10000半径，仅需约50MB内存存储检测状态
- * 8. 添加ConcurrentHashMap缓存机制：缓存搜索结果5分钟，基于玩家移动距离复用
- * 9. 缓存支持负结果：记录"无结构"区域，避免重复搜索空区域
- * 10. 智能缓存失效：玩家移动超过5000方块（约31区块）时缓存失效，匹配搜索范围
- * 11. 异步搜索机制：使用CompletableFuture在后台线程执行搜索，避免主线程卡顿
- * 12. 重复搜索保护：同一区域的并发搜索会共享结果，避免资源浪费
- * 13. 智能区域搜索：动态检测500方块范围内的进行中搜索，避免网格边界问题
- * 14. 多线程并行搜索：将方形搜索区域分割为多个子方形，并行搜索以提升性能
- * 15. 早期终止机制：任意线程找到结构后立即停止其他线程，避免资源浪费
- * 16. 自适应线程数：根据搜索范围和CPU核心数动态调整并行线程数
- * 17. 方形分割策略：保持原有方形搜索逻辑，按象限或网格分割搜索区域
- * 18. 分段锁优化：使用基于ServerLevel的64段锁，同一世界串行，不同世界并发，保证线程安全
- * 19. 模块化设计：配置、缓存、验证逻辑分离，代码从952行优化到约750行，可维护性大幅提升
+ *
+ * 查询顺序
+ * 1. 预计算索引：通过 /maidspell precompute 预先遍历出生点附近的所有结构，写入有序二进制文件，查询时二分查找
+ * 2. 持久化位置索引：每个世界以SavedData保存已确认的结构和已搜索的空网格单元，重启后仍然有效；主线程查询只检查有限的环数
+ * 3. 搜索结果缓存：请求通过准入控制后、启动遍历前查询；按维度和空间分桶，同一搜索区域只保留最新结果，LRU限制条目数，时间轮负责过期清理；支持"无结构"的负结果
+ * 4. 以上都无法给出确定答案时才启动异步搜索，主线程不会被搜索阻塞
+ *
+ * 准入与共享
+ * 5. 准入控制：全服并发搜索数量受限，每名玩家的请求排队去重并有冷却时间，下线或切换维度时取消；线程池随服务器启停
+ * 6. 共享搜索：附近的请求订阅进行中的搜索并扩大其剪枝余量，结果按各自位置重新排序，多名玩家同时摇铃只搜索一次
+ * 7. 最近k个结构查询：一次遍历用容量为k的最大堆收集最近的k个结构，按第k近的距离剪枝
+ *
+ * 遍历
+ * 8. 最优优先搜索：小方格按到玩家的最小距离出队，找到结构后剪枝更远的工作，保证返回最近的结构
+ * 9. 工作窃取：搜索运行在ForkJoinPool上，小方格递归拆分为不超过128区块的子任务，空闲线程窃取繁忙线程的子任务
+ * 10. 可续搜索：按原点区域持久化经放置网格确认为空的小方格，同一区域再次摇铃时跳过这些小方格继续向外搜索
+ * 11. 放置网格枚举：读取结构集的random_spread放置规则，每个网格单元只验证唯一的合法起始区块
+ * 12. 步进搜索（放置规则被数据包替换时的后备方案）：以大步长(4)按步进螺旋游标逐环枚举，天然不重复访问，几乎零分配
+ * 13. 分层预扫描：步进搜索前先以16区块间距粗采样，只细化樱花林采样点附近（按检查半径膨胀）的粗分块
+ *
+ * 候选筛选
+ * 14. 樱花林检查：检查中心、四角和四边中点共9个区块，任一不是樱花林即放弃
+ * 15. 生物群系分类缓存：按种子和区块记录樱花林判定结果并持久化，重复验证只需读取位图
+ * 16. 有效性预测：完整验证前用稀疏高度样本计算方差下界，排除必然失败的起始区块，并统计误报率
+ * 17. 高度采样缓存：世界生成、有效性预测和结果处理共享按RandomState区分的区块高度采样缓存，重叠的检查窗口不再重复计算地形噪声
+ *
+ * 结构验证（后端可配置）
+ * 18. 线程封闭验证（默认）：各搜索线程独立构造生成上下文验证起始区块，不争用世界的锁
+ * 19. 分段锁验证：通过findNearestMapStructure验证，使用基于ServerLevel的64段锁，同一世界串行，不同世界并发
+ * 20. 主线程验证：将结构验证放到服务器主线程按每tick时间预算执行，StructureCheck只在主线程访问
+ *
+ * 可观测性
+ * 21. 搜索统计：各环节计数、锁等待和排队耗时以及最近请求的延迟分布，通过 /maidspell searchstats 查看
  */
 public class WindSeekingBell extends Item {
 
@@ -65,15 +83,33 @@ public class WindSeekingBell extends Item {
         "item.touhou_little_maid_spell.wind_seeking_bell.click_to_suggest"
     ).withStyle(ChatFormatting.YELLOW);
 
+    private static final Component SEARCHING_MESSAGE = Component.translatable(
+        "item.touhou_little_maid_spell.wind_seeking_bell.searching"
+    ).withStyle(ChatFormatting.YELLOW);
+
 
-    // 搜索缓存管理器：管理所有缓存和正在进行的搜索
+    // 搜索缓存管理器：管理搜索结果缓存
     private static final SearchCacheManager cacheManager = new SearchCacheManager();
 
     // 生物群系验证器：检查樱花林生物群系
     private static final BiomeValidator biomeValidator = new BiomeValidator();
 
+    // 结构有效性预测器：完整验证前排除必然失败的起始区块
+    private static final StructureValidityPredictor validityPredictor = new StructureValidityPredictor();
+
     // 结构搜索引擎：负责执行并行搜索
-    private static final StructureSearchEngine searchEngine = new StructureSearchEngine(biomeValidator, cacheManager);
+    private static final StructureSearchEngine searchEngine =
+        new StructureSearchEngine(biomeValidator, validityPredictor, cacheManager);
+
+    // 搜索准入控制器：限制并发搜索，管理每名玩家的请求
+    private static final SearchAdmissionController admissionController = new SearchAdmissionController(searchEngine);
+
+    /**
+     * 获取结构搜索引擎，供调试命令使用
+     */
+    public static StructureSearchEngine getSearchEngine() {
+        return searchEngine;
+    }
 
     public WindSeekingBell() {
         super(new Properties()
@@ -110,11 +146,30 @@ public class WindSeekingBell extends Item {
         // 记录搜索开始时间
         long searchStartTime = System.currentTimeMillis();
 
-        // 使用搜索引擎执行异步搜索
-        searchEngine.searchAsync(serverLevel, playerPos).thenAccept(result -> {
+        // 优先从预计算索引和持久化位置索引中查询，已完整搜索过的区域无需再启动搜索
+        HiddenRetreatIndex.QueryResult indexed = searchEngine.queryPrecomputed(serverLevel, playerPos);
+        if (!indexed.resolved()) {
+            indexed = searchEngine.queryIndex(serverLevel, playerPos);
+        }
+        if (indexed.resolved()) {
             long searchTime = System.currentTimeMillis() - searchStartTime;
-            handleSearchResult(serverLevel, playerPos, player, itemStack, result, searchTime);
-        });
+            handleSearchResult(serverLevel, playerPos, player, itemStack, indexed.structurePos(), searchTime);
+            return;
+        }
+
+        if (!(player instanceof ServerPlayer serverPlayer)) {
+            return;
+        }
+
+        // 经由准入控制器排队执行异步搜索
+        SearchAdmissionController.Admission admission = admissionController.submit(serverPlayer, serverLevel, playerPos,
+            result -> {
+                long searchTime = System.currentTimeMillis() - searchStartTime;
+                handleSearchResult(serverLevel, playerPos, player, itemStack, result, searchTime);
+            });
+        if (admission == SearchAdmissionController.Admission.DUPLICATE) {
+            player.displayClientMessage(SEARCHING_MESSAGE, true);
+        }
     }
 
     /**
@@ -126,11 +181,12 @@ public class WindSeekingBell extends Item {
         serverLevel.getServer().execute(() -> {
             if (structurePos != null) {
                 // 找到结构，创建自定义的寻风之铃飞行实体
-                int height = serverLevel.getChunkSource().getGenerator().getFirstOccupiedHeight(
-                    structurePos.getX(), structurePos.getZ(),
-                    Heightmap.Types.MOTION_BLOCKING_NO_LEAVES,
-                    serverLevel.getChunk(structurePos).getHeightAccessorForGeneration(),
-                    serverLevel.getChunkSource().randomState()
+                // 结构的放置高度来自共享的高度采样缓存，不需要加载结构所在的区块
+                int height = HiddenRetreatStructure.estimatePlacementHeight(
+                    serverLevel.getChunkSource().getGenerator(),
+                    serverLevel,
+                    serverLevel.getChunkSource().randomState(),
+                    new ChunkPos(structurePos)
                 );
                 BlockPos structurePosVec3i = new BlockPos(structurePos.getX(), 0, structurePos.getZ());
                 BlockPos playerPosVec3i = new BlockPos(playerPos.getX(), 0, playerPos.getZ());
@@ -226,11 +282,38 @@ public class WindSeekingBell extends Item {
         public static void onServerStarted(ServerStartedEvent event) {
             // 服务器启动时清空缓存，确保不会跨存档使用旧缓存
             clearAllCaches();
+            StructureSearchEngine.startExecutor();
             Global.LOGGER.info("WindSeekingBell: Cleared caches on server startup");
             Global.LOGGER.info("WindSeekingBell: Using striped lock with {} segments for improved concurrency",
                 SearchConfig.LOCK_STRIPE_COUNT);
         }
 
+        @SubscribeEvent
+        public static void onServerStopping(ServerStoppingEvent event) {
+            // 服务器停止前取消所有搜索并关闭线程池，避免搜索线程继续访问即将卸载的世界
+            admissionController.shutdown();
+            StructureSearchEngine.stopExecutor();
+            // 搜索线程已停止，补标未保存的生物群系采样，随服务器最后一次保存写入
+            BiomeClassificationCache.flushAll();
+            validityPredictor.logStats();
+        }
+
+        @SubscribeEvent
+        public static void onServerTick(ServerTickEvent.Post event) {
+            MainThreadStructureVerifier.INSTANCE.drain();
+            admissionController.tick();
+        }
+
+        @SubscribeEvent
+        public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+            admissionController.cancel(event.getEntity().getUUID());
+        }
+
+        @SubscribeEvent
+        public static void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+            admissionController.cancel(event.getEntity().getUUID());
+        }
+
         @SubscribeEvent
         public static void onServerStopped(ServerStoppedEvent event) {
             // 服务器停止时清空缓存，释放内存
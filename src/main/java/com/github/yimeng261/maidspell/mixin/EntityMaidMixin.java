@@ -5,11 +5,14 @@ import com.github.tartaricacid.touhoulittlemaid.inventory.handler.BaubleItemHand
 import com.github.yimeng261.maidspell.Global;
 import com.github.yimeng261.maidspell.MaidSpellMod;
 import com.github.yimeng261.maidspell.api.entity.AnchoredEntityMaid;
+import com.github.yimeng261.maidspell.api.entity.SpellContextEntityMaid;
 import com.github.yimeng261.maidspell.item.MaidSpellItems;
 import com.github.yimeng261.maidspell.spell.manager.BaubleStateManager;
+import com.github.yimeng261.maidspell.spell.manager.MaidSpellContext;
 import com.github.yimeng261.maidspell.spell.manager.SpellBookManager;
 import com.mojang.logging.LogUtils;
 import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.syncher.EntityDataAccessor;
 import net.minecraft.network.syncher.EntityDataSerializers;
 import net.minecraft.network.syncher.SynchedEntityData;
@@ -32,9 +35,10 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
  * 1. 替换女仆背包处理器为支持法术书变化监听的版本
  * 2. 替换女仆饰品处理器为支持女仆实体关联的版本
  * 3. 修改finalizeSpawn方法，使hidden_retreat结构中的女仆structureSpawn不为true
+ * 4. 在女仆实体上挂载法术上下文，保存法术书管理器和各提供者的法术数据
  */
 @Mixin(value = EntityMaid.class,remap = false)
-public abstract class EntityMaidMixin extends TamableAnimal implements AnchoredEntityMaid {
+public abstract class EntityMaidMixin extends TamableAnimal implements AnchoredEntityMaid, SpellContextEntityMaid {
     private static final Logger LOGGER = LogUtils.getLogger();
 
     @Unique
@@ -49,6 +53,12 @@ public abstract class EntityMaidMixin extends TamableAnimal implements AnchoredE
     @Shadow
     public boolean guiOpening;
 
+    /**
+     * 女仆的法术上下文，首次访问时创建，不保存到NBT
+     */
+    @Unique
+    private MaidSpellContext maidSpell$spellContext;
+
 
     protected EntityMaidMixin(EntityType<? extends TamableAnimal> entityType, Level level) {
         super(entityType, level);
@@ -130,6 +140,23 @@ public abstract class EntityMaidMixin extends TamableAnimal implements AnchoredE
         }
     }
 
+    /**
+     * 保存剩余的法术冷却，换维度和魂符移动都会经过NBT复制到新实体
+     */
+    @Inject(method = "addAdditionalSaveData", at = @At("TAIL"), remap = true)
+    protected void afterAddAdditionalSaveData(CompoundTag compound, CallbackInfo ci) {
+        if (maidSpell$spellContext != null) {
+            maidSpell$spellContext.saveCooldowns(compound);
+        }
+    }
+
+    @Inject(method = "readAdditionalSaveData", at = @At("TAIL"), remap = true)
+    protected void afterReadAdditionalSaveData(CompoundTag compound, CallbackInfo ci) {
+        if (compound.contains(MaidSpellContext.COOLDOWNS_TAG)) {
+            maidSpell$getSpellContext().loadCooldowns(compound);
+        }
+    }
+
     @Inject(method = "defineSynchedData", at = @At("TAIL"))
     protected void afterDefineSynchedData(SynchedEntityData.Builder builder, CallbackInfo ci) {
         builder.define(MAID_SPELL_DATA_ANCHORED, false);
@@ -145,6 +172,14 @@ public abstract class EntityMaidMixin extends TamableAnimal implements AnchoredE
         entityData.set(MAID_SPELL_DATA_ANCHORED, anchored);
     }
 
+    @Override
+    public MaidSpellContext maidSpell$getSpellContext() {
+        if (maidSpell$spellContext == null) {
+            maidSpell$spellContext = new MaidSpellContext((EntityMaid)(Object)this);
+        }
+        return maidSpell$spellContext;
+    }
+
     /**
      * 检查调用栈是否来自touhou-little-maid模组
      * @return 如果调用来自TLM模组返回true
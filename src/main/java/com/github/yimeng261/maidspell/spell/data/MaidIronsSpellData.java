@@ -2,23 +2,17 @@ package com.github.yimeng261.maidspell.spell.data;
 
 import com.github.tartaricacid.touhoulittlemaid.entity.passive.EntityMaid;
 import com.github.yimeng261.maidspell.api.IMaidSpellData;
+import com.github.yimeng261.maidspell.api.entity.SpellContextEntityMaid;
 import io.redspace.ironsspellbooks.api.magic.MagicData;
 import io.redspace.ironsspellbooks.api.spells.SpellSlot;
 import net.minecraft.world.entity.LivingEntity;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * 女仆铁魔法数据存储类
  * 集中管理每个女仆的铁魔法相关状态和数据
  */
 public class MaidIronsSpellData extends IMaidSpellData {
 
-    // 全局数据存储，按女仆UUID映射
-    private static final Map<UUID, MaidIronsSpellData> MAID_DATA_MAP = new ConcurrentHashMap<>();
-
     // === 基本状态 ===
     private LivingEntity origin_target = null;
 
@@ -27,36 +21,18 @@ public class MaidIronsSpellData extends IMaidSpellData {
     private final MagicData magicData;
 
     // === 构造函数 ===
-    private MaidIronsSpellData() {
+    // 由提供者在女仆第一次持有铁魔法法术书时创建，保存在女仆的法术上下文中
+    public MaidIronsSpellData() {
         this.magicData = new MagicData(true); // true表示这是mob
     }
 
-    // === 静态工厂方法 ===
-
-    /**
-     * 获取指定女仆的法术数据，如果不存在则创建新的
-     */
-    public static MaidIronsSpellData getOrCreate(UUID maidUuid) {
-        return MAID_DATA_MAP.computeIfAbsent(maidUuid, k -> new MaidIronsSpellData());
-    }
-
-    public static MaidIronsSpellData getOrCreate(EntityMaid maidEntity) {
-        UUID maidUuid = maidEntity.getUUID();
-        return MAID_DATA_MAP.computeIfAbsent(maidUuid, k -> new MaidIronsSpellData());
-    }
-
-    /**
-     * 获取指定女仆的法术数据，如果不存在返回null
-     */
-    public static MaidIronsSpellData get(UUID maidUuid) {
-        return MAID_DATA_MAP.get(maidUuid);
-    }
+    // === 静态查询方法 ===
 
     /**
-     * 移除指定女仆的法术数据（当女仆被删除时调用）
+     * 获取指定女仆的法术数据，女仆从未持有过铁魔法法术书时返回null
      */
-    public static void remove(UUID maidUuid) {
-        MAID_DATA_MAP.remove(maidUuid);
+    public static MaidIronsSpellData get(EntityMaid maidEntity) {
+        return SpellContextEntityMaid.getSpellContext(maidEntity).findData(MaidIronsSpellData.class);
     }
 
     public void switchTargetToOwner(EntityMaid maid) {
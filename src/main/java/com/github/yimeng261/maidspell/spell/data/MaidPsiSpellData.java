@@ -4,10 +4,6 @@ import com.github.yimeng261.maidspell.api.IMaidSpellData;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * 女仆Psi法术数据管理类
  * 管理每个女仆的CAD、法术状态和冷却时间
@@ -15,26 +11,14 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MaidPsiSpellData extends IMaidSpellData {
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    // 全局女仆数据存储
-    private static final Map<UUID, MaidPsiSpellData> MAID_DATA = new ConcurrentHashMap<>();
-
-
     // 当前目标
 
     // 施法状态
     private Object currentSpell; // 使用Object避免直接依赖Psi类
     private int castingTicks = 0;
 
-    private MaidPsiSpellData(UUID maidUUID) {
-        // 女仆UUID
-    }
-
-    public static MaidPsiSpellData getOrCreate(UUID maidUUID) {
-        return MAID_DATA.computeIfAbsent(maidUUID, MaidPsiSpellData::new);
-    }
-
-    public static void remove(UUID maidUUID) {
-        MAID_DATA.remove(maidUUID);
+    public MaidPsiSpellData() {
+        // 由提供者在女仆第一次持有CAD时创建，保存在女仆的法术上下文中
     }
 
 
@@ -0,0 +1,123 @@
+package com.github.yimeng261.maidspell.spell.manager;
+
+import com.github.tartaricacid.touhoulittlemaid.entity.passive.EntityMaid;
+import com.github.yimeng261.maidspell.api.IMaidSpellData;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * 女仆法术上下文
+ * 通过mixin字段挂在女仆实体上，持有该女仆的法术书管理器和各提供者的法术数据，直接从实体读取，不再按UUID查全局表
+ *
+ * - 提供者数据按提供者槽位存放，在该提供者的法术书第一次出现时才创建，没有对应法术书的女仆不会分配其数据
+ * - 上下文随实体实例存在，实体被回收时一并释放；魂符移动或跨维度产生的新实体会重新创建上下文，加入世界时由 initSpellBooks 重建法术书
+ * - 剩余的法术冷却随女仆NBT保存和读取，换维度、魂符移动和重启服务器都不会重置冷却；
+ *   读取时尚未创建数据的提供者，其冷却暂存到数据创建时再恢复，保存时原样写回
+ * - 只在女仆所在的线程上访问，不需要同步
+ */
+public final class MaidSpellContext {
+
+    /** 女仆NBT中保存法术冷却的键，按提供者类名分组 */
+    public static final String COOLDOWNS_TAG = "MaidSpellCooldowns";
+
+    private final SpellBookManager manager;
+
+    // 第i个元素是槽位为i的提供者的数据，尚未创建时为null
+    private final IMaidSpellData[] providerData;
+
+    // 从NBT读取、对应数据尚未创建的冷却，没有时为null
+    private CompoundTag pendingCooldowns;
+
+    public MaidSpellContext(EntityMaid maid) {
+        this.manager = new SpellBookManager(maid);
+        this.providerData = new IMaidSpellData[SpellBookManager.providerCount()];
+    }
+
+    /**
+     * 获取女仆的法术书管理器
+     */
+    public SpellBookManager getManager() {
+        return manager;
+    }
+
+    /**
+     * 获取指定槽位的提供者数据
+     * @param slot 提供者槽位
+     * @return 提供者数据，尚未创建时返回null
+     */
+    public IMaidSpellData getData(int slot) {
+        return providerData[slot];
+    }
+
+    /**
+     * 设置指定槽位的提供者数据，并恢复暂存的冷却
+     */
+    public void setData(int slot, IMaidSpellData data) {
+        providerData[slot] = data;
+        restorePendingCooldowns(slot);
+    }
+
+    /**
+     * 将各提供者剩余的法术冷却写入女仆NBT
+     */
+    public void saveCooldowns(CompoundTag tag) {
+        CompoundTag cooldowns = pendingCooldowns != null ? pendingCooldowns.copy() : new CompoundTag();
+        for (int slot = 0; slot < providerData.length; slot++) {
+            if (providerData[slot] == null) {
+                continue;
+            }
+            CompoundTag spells = providerData[slot].saveCooldowns();
+            if (!spells.isEmpty()) {
+                cooldowns.put(providerKey(slot), spells);
+            }
+        }
+        if (!cooldowns.isEmpty()) {
+            tag.put(COOLDOWNS_TAG, cooldowns);
+        }
+    }
+
+    /**
+     * 从女仆NBT读取法术冷却，已创建数据的提供者立即恢复，其余暂存
+     */
+    public void loadCooldowns(CompoundTag tag) {
+        CompoundTag cooldowns = tag.getCompound(COOLDOWNS_TAG);
+        pendingCooldowns = cooldowns.isEmpty() ? null : cooldowns.copy();
+        for (int slot = 0; slot < providerData.length; slot++) {
+            if (providerData[slot] != null) {
+                restorePendingCooldowns(slot);
+            }
+        }
+    }
+
+    private void restorePendingCooldowns(int slot) {
+        if (pendingCooldowns == null) {
+            return;
+        }
+        String key = providerKey(slot);
+        if (pendingCooldowns.contains(key, Tag.TAG_COMPOUND)) {
+            providerData[slot].loadCooldowns(pendingCooldowns.getCompound(key));
+            pendingCooldowns.remove(key);
+        }
+        if (pendingCooldowns.isEmpty()) {
+            pendingCooldowns = null;
+        }
+    }
+
+    private static String providerKey(int slot) {
+        return SpellBookManager.providerAt(slot).getClass().getName();
+    }
+
+    /**
+     * 按数据类型查找提供者数据，供提供者之外的代码（如战斗任务）读取，不会创建数据
+     * @param type 数据类型
+     * @return 提供者数据，尚未创建时返回null
+     */
+    public <T extends IMaidSpellData> T findData(Class<T> type) {
+        for (IMaidSpellData data : providerData) {
+            if (type.isInstance(data)) {
+                return type.cast(data);
+            }
+        }
+        return null;
+    }
+}
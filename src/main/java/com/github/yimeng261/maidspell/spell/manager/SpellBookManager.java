@@ -2,7 +2,9 @@ package com.github.yimeng261.maidspell.spell.manager;
 
 import com.github.tartaricacid.touhoulittlemaid.entity.passive.EntityMaid;
 import com.github.yimeng261.maidspell.api.ISpellBookProvider;
+import com.github.yimeng261.maidspell.api.entity.SpellContextEntityMaid;
 import com.mojang.logging.LogUtils;
+import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.fml.ModList;
 import net.neoforged.neoforge.items.wrapper.CombinedInvWrapper;
@@ -10,9 +12,6 @@ import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 法术书管理器
@@ -21,21 +20,35 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SpellBookManager {
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    // 女仆管理器实例缓存 - 使用ConcurrentHashMap保证线程安全
-    private static final Map<UUID, SpellBookManager> MAID_MANAGERS = new ConcurrentHashMap<>();
+    // 注册阶段的提供者列表，注册完成后冻结为 PROVIDERS
+    private static final List<ISpellBookProvider<?, ?>> registeredProviders = new ArrayList<>();
 
+    public static final List<String> loadedMods = new ArrayList<>();
 
-    // 实例相关的提供者列表 - 每个管理器可以有自己的提供者实例
-    private static final List<ISpellBookProvider<?, ?>> instanceProviders = new ArrayList<>();
+    // 所有提供者，注册完成后不再变化；提供者的下标即其槽位，也是其在活跃掩码中的位
+    private static final ISpellBookProvider<?, ?>[] PROVIDERS;
 
-    public static final List<String> loadedMods = new ArrayList<>();
+    // PROVIDERS 的只读视图，供外部遍历，不再每次复制
+    private static final List<ISpellBookProvider<?, ?>> PROVIDER_LIST;
 
     // 女仆实体存储为每个管理器的上下文
     private EntityMaid maid;
 
+    // 持有法术书的提供者掩码，第i位对应 PROVIDERS[i]，在女仆物品变化时更新
+    private int activeProviders;
+
     static {
         // 静态初始化：注册所有已知的提供者
         initializeProviderFactories();
+        if (registeredProviders.size() > Integer.SIZE) {
+            throw new IllegalStateException("Too many spell book providers: " + registeredProviders.size());
+        }
+        PROVIDERS = registeredProviders.toArray(new ISpellBookProvider<?, ?>[0]);
+        PROVIDER_LIST = List.of(PROVIDERS);
+        for (int i = 0; i < PROVIDERS.length; i++) {
+            PROVIDERS[i].bindSlot(i);
+        }
+        registeredProviders.clear();
     }
 
     /**
@@ -67,7 +80,7 @@ public class SpellBookManager {
         try {
             // 检查模组是否加载
             if (ModList.get().isLoaded(modId)) {
-                instanceProviders.add((ISpellBookProvider<?, ?>) providerClass.getConstructor().newInstance());
+                registeredProviders.add((ISpellBookProvider<?, ?>) providerClass.getConstructor().newInstance());
                 loadedMods.add(modId);
                 LOGGER.debug("Mod {} loaded, finished {} registration", modId, providerName);
             }
@@ -79,69 +92,58 @@ public class SpellBookManager {
 
 
     /**
-     * 为特定女仆创建管理器实例（私有构造函数）
+     * 为特定女仆创建管理器实例，由女仆的法术上下文创建
      */
-    private SpellBookManager(EntityMaid maid) {
+    SpellBookManager(EntityMaid maid) {
         this.maid = maid;
     }
 
-
     /**
-     * 获取或创建女仆的管理器实例
-     * 如果该女仆已有管理器实例，则返回现有的；否则创建新的
-     *
-     * @param maid 女仆实体
-     * @return 该女仆对应的SpellBookManager实例
+     * 提供者数量，即女仆法术上下文中数据槽位的数量
      */
-    public static SpellBookManager getOrCreateManager(EntityMaid maid) {
-        UUID maidUUID = maid.getUUID();
+    static int providerCount() {
+        return PROVIDERS.length;
+    }
 
-        // 使用computeIfAbsent确保线程安全且避免重复创建
-        return MAID_MANAGERS.computeIfAbsent(maidUUID, uuid -> {
-            LOGGER.debug("Creating new SpellBookManager for maid {}", uuid);
-            return new SpellBookManager(maid);
-        });
+    /**
+     * 获取指定槽位的提供者
+     */
+    static ISpellBookProvider<?, ?> providerAt(int slot) {
+        return PROVIDERS[slot];
     }
 
+
     /**
-     * 移除女仆的管理器实例（当女仆被移除时调用）
+     * 获取或创建女仆的管理器实例
+     * 管理器保存在女仆实体的法术上下文中，随实体一起回收
      *
      * @param maid 女仆实体
+     * @return 该女仆对应的SpellBookManager实例
      */
-    public static void removeManager(EntityMaid maid) {
-        if (maid == null) {
-            return;
-        }
-
-        UUID maidUUID = maid.getUUID();
-        SpellBookManager removed = MAID_MANAGERS.remove(maidUUID);
-
-        if (removed != null) {
-            LOGGER.debug("Removed SpellBookManager for maid {}", maidUUID);
-        }
-
+    public static SpellBookManager getOrCreateManager(EntityMaid maid) {
+        return SpellContextEntityMaid.getSpellContext(maid).getManager();
     }
 
 
     /**
-     * 执行法术
+     * 执行法术，没有法术书的提供者不会施法，直接跳过
      */
     public void castSpell(EntityMaid maid) {
-        for (ISpellBookProvider<?, ?> provider : getProviders()) {
-            provider.castSpell(maid);
+        for (int mask = activeProviders; mask != 0; mask &= mask - 1) {
+            PROVIDERS[Integer.numberOfTrailingZeros(mask)].castSpell(maid);
         }
     }
 
     /**
-     * 获取当前实例的提供者列表
+     * 获取所有提供者，返回只读列表
      */
     public List<ISpellBookProvider<?, ?>> getProviders() {
-        return new ArrayList<>(instanceProviders);
+        return PROVIDER_LIST;
     }
 
 
     public void stopAllCasting() {
-        for (ISpellBookProvider<?, ?> provider : getProviders()) {
+        for (ISpellBookProvider<?, ?> provider : PROVIDERS) {
             if (provider.isCasting(maid)) {
                 provider.stopCasting(maid);
             }
@@ -164,18 +166,20 @@ public class SpellBookManager {
      * 更新法术冷却：每次一秒
      */
     public void updateCooldown(){
-        for (ISpellBookProvider<?, ?> provider : getProviders()) {
+        // 没有法术书的提供者也要继续冷却，重新装备法术书时冷却不会停留在取下时的状态
+        for (ISpellBookProvider<?, ?> provider : PROVIDERS) {
             provider.updateCooldown(maid);
         }
     }
 
 
     public void tick(){
-        // 处理持续性施法
-
-        for (ISpellBookProvider<?, ?> provider : getProviders()) {
-            if(provider.getTarget(maid) != null){
-                provider.getTarget(maid).invulnerableTime = 0;
+        // 处理持续性施法，只遍历持有法术书的提供者
+        for (int mask = activeProviders; mask != 0; mask &= mask - 1) {
+            ISpellBookProvider<?, ?> provider = PROVIDERS[Integer.numberOfTrailingZeros(mask)];
+            LivingEntity target = provider.getTarget(maid);
+            if(target != null){
+                target.invulnerableTime = 0;
             }
             provider.processContinuousCasting(maid);
         }
@@ -188,7 +192,7 @@ public class SpellBookManager {
 
     public void initSpellBooks(){
         // 先清理所有法术容器
-        for (ISpellBookProvider<?, ?> provider : getProviders()) {
+        for (ISpellBookProvider<?, ?> provider : PROVIDERS) {
             provider.clearSpellItems(maid);
         }
 
@@ -197,25 +201,50 @@ public class SpellBookManager {
         for(int i=0;i< wrapper.getSlots();i++){
             ItemStack itemStack = wrapper.getStackInSlot(i);
             // 更新每个提供者的法术书
-            for (ISpellBookProvider<?, ?> provider : getProviders()) {
+            for (ISpellBookProvider<?, ?> provider : PROVIDERS) {
                 provider.handleItemStack(maid, itemStack, true);
             }
         }
-
+        updateActiveProviders();
     }
 
     public void removeSpellItem(EntityMaid maid, ItemStack itemStack) {
         LOGGER.debug("Removing spell item for maid {}", maid.getUUID());
-        for(ISpellBookProvider<?,?> provider : getProviders()) {
+        for(ISpellBookProvider<?,?> provider : PROVIDERS) {
             LOGGER.debug("Removing spell item for provider: {}", provider);
             provider.handleItemStack(maid, itemStack, false);
         }
+        updateActiveProviders();
     }
 
     public void addSpellItem(EntityMaid maid, ItemStack itemStack) {
-        for(ISpellBookProvider<?,?> provider : getProviders()) {
+        for(ISpellBookProvider<?,?> provider : PROVIDERS) {
             provider.handleItemStack(maid, itemStack, true);
         }
+        updateActiveProviders();
+    }
+
+    /**
+     * 根据各提供者是否持有法术书重新计算活跃掩码
+     * 失去最后一本法术书的提供者不再被tick，若仍在施法则立即停止，避免施法状态无人处理
+     */
+    private void updateActiveProviders() {
+        if (maid.level().isClientSide) {
+            return;
+        }
+        int mask = 0;
+        for (int i = 0; i < PROVIDERS.length; i++) {
+            if (PROVIDERS[i].hasSpellBooks(maid)) {
+                mask |= 1 << i;
+            }
+        }
+        for (int removed = activeProviders & ~mask; removed != 0; removed &= removed - 1) {
+            ISpellBookProvider<?, ?> provider = PROVIDERS[Integer.numberOfTrailingZeros(removed)];
+            if (provider.isCasting(maid)) {
+                provider.stopCasting(maid);
+            }
+        }
+        activeProviders = mask;
     }
 
 }
\ No newline at end of file
@@ -46,7 +46,7 @@ public class IronsSpellbooksProvider extends ISpellBookProvider<MaidIronsSpellDa
      * 构造函数，绑定 MaidIronsSpellData 数据类型和 SpellData 法术类型
      */
     public IronsSpellbooksProvider() {
-        super(MaidIronsSpellData::getOrCreate, SpellSlot.class);
+        super(MaidIronsSpellData::new, SpellSlot.class);
     }
 
     // === 核心方法（接受EntityMaid参数） ===
@@ -35,7 +35,7 @@ public class PsiProvider extends ISpellBookProvider<MaidPsiSpellData, Spell> {
      * 构造函数，绑定 MaidPsiSpellData 数据类型和 Spell 法术类型
      */
     public PsiProvider() {
-        super(MaidPsiSpellData::getOrCreate, Spell.class);
+        super(MaidPsiSpellData::new, Spell.class);
     }
 
     /**
@@ -104,7 +104,8 @@ public class SpellCombatFarTask extends SpellCombatMeleeTask {
 
             LivingEntity target = maid.getBrain().getMemory(MemoryModuleType.ATTACK_TARGET).orElse(null);
             if(target == maid.getOwner() && ModList.get().isLoaded("irons_spellbooks")){
-                target = MaidIronsSpellData.getOrCreate(maid).getOriginTarget();
+                MaidIronsSpellData data = MaidIronsSpellData.get(maid);
+                target = data != null ? data.getOriginTarget() : null;
             }
             if (!(target instanceof Player)) {
                 currentSpellCaster.setTarget(target);
@@ -218,7 +218,8 @@ public class SpellCombatMeleeTask implements IRangedAttackTask {
 
             LivingEntity target = maid.getBrain().getMemory(MemoryModuleType.ATTACK_TARGET).orElse(null);
             if(target == maid.getOwner() && ModList.get().isLoaded("irons_spellbooks")){
-                target = MaidIronsSpellData.getOrCreate(maid).getOriginTarget();
+                MaidIronsSpellData data = MaidIronsSpellData.get(maid);
+                target = data != null ? data.getOriginTarget() : null;
             }
             if (!(target instanceof Player)) {
                 this.currentSpellCaster.setTarget(target);
@@ -322,7 +323,7 @@ public class SpellCombatMeleeTask implements IRangedAttackTask {
 
             try {
                 // 获取女仆的铁魔法数据
-                MaidIronsSpellData data = MaidIronsSpellData.getOrCreate(maid);
+                MaidIronsSpellData data = MaidIronsSpellData.get(maid);
                 if (data == null) {
                     return false;
                 }
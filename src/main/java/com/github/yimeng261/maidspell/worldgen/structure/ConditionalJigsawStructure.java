@@ -1,5 +1,6 @@
 package com.github.yimeng261.maidspell.worldgen.structure;
 
+import com.github.yimeng261.maidspell.MaidSpellMod;
 import com.github.yimeng261.maidspell.worldgen.MaidSpellStructures;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
@@ -7,6 +8,7 @@ import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
+import net.minecraft.core.RegistryAccess;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.tags.TagManager;
 import net.minecraft.world.level.ChunkPos;
@@ -21,13 +23,17 @@ import net.minecraft.world.level.levelgen.structure.pools.StructureTemplatePool;
 import net.minecraft.world.level.levelgen.structure.pools.alias.PoolAliasBinding;
 import net.minecraft.world.level.levelgen.structure.pools.alias.PoolAliasLookup;
 import net.minecraft.world.level.levelgen.structure.templatesystem.LiquidSettings;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
 import net.neoforged.neoforge.common.conditions.ConditionContext;
 import net.neoforged.neoforge.common.conditions.ICondition;
 import net.neoforged.neoforge.common.conditions.TrueCondition;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 条件化结构
@@ -74,6 +80,22 @@ public class ConditionalJigsawStructure extends Structure {
     private final DimensionPadding dimensionPadding;
     private final LiquidSettings liquidSettings;
 
+    // 数据包重载代数，标签更新时递增，使所有结构的条件缓存失效
+    // 服务端和客户端的标签更新可能在不同线程同时触发，需要原子递增
+    private static final AtomicInteger RELOAD_GENERATION = new AtomicInteger();
+
+    // 生成条件的计算结果：条件只在数据包重载时变化，每个区块只需一次volatile读取
+    private volatile ConditionResult conditionResult;
+
+    /**
+     * 生成条件的计算结果
+     * @param registryAccess 计算时使用的注册表
+     * @param generation 计算时的数据包重载代数
+     * @param passed 是否满足所有生成条件
+     */
+    private record ConditionResult(RegistryAccess registryAccess, int generation, boolean passed) {
+    }
+
     private static DataResult<ConditionalJigsawStructure> verifyRange(ConditionalJigsawStructure structure) {
         int i = switch (structure.terrainAdaptation()) {
             case NONE -> 0;
@@ -114,9 +136,7 @@ public class ConditionalJigsawStructure extends Structure {
 
     @Override
     public Optional<Structure.GenerationStub> findGenerationPoint(Structure.GenerationContext context) {
-        TagManager tagManager = new TagManager(context.registryAccess());
-        ConditionContext conditionContext = new ConditionContext(tagManager);
-        if (!this.generateConditions.stream().allMatch(c -> c.test(conditionContext))) {
+        if (!testGenerateConditions(context.registryAccess())) {
             return Optional.empty();
         }
         ChunkPos chunkpos = context.chunkPos();
@@ -137,8 +157,38 @@ public class ConditionalJigsawStructure extends Structure {
         );
     }
 
+    /**
+     * 检查生成条件，同一注册表和数据包重载代数下只计算一次
+     * 多个世界生成线程可能同时计算，结果相同，后写入的覆盖先写入的即可
+     */
+    private boolean testGenerateConditions(RegistryAccess registryAccess) {
+        int generation = RELOAD_GENERATION.get();
+        ConditionResult cached = this.conditionResult;
+        if (cached != null && cached.registryAccess() == registryAccess && cached.generation() == generation) {
+            return cached.passed();
+        }
+
+        TagManager tagManager = new TagManager(registryAccess);
+        ConditionContext conditionContext = new ConditionContext(tagManager);
+        boolean passed = this.generateConditions.stream().allMatch(c -> c.test(conditionContext));
+        this.conditionResult = new ConditionResult(registryAccess, generation, passed);
+        return passed;
+    }
+
     @Override
     public StructureType<?> type() {
         return MaidSpellStructures.CONDITIONAL_JIGSAW.get();
     }
+
+    /**
+     * 数据包重载监听器：标签更新后条件结果可能变化，使缓存失效
+     */
+    @EventBusSubscriber(modid = MaidSpellMod.MOD_ID)
+    public static class ReloadHandler {
+
+        @SubscribeEvent
+        public static void onTagsUpdated(TagsUpdatedEvent event) {
+            RELOAD_GENERATION.incrementAndGet();
+        }
+    }
 }
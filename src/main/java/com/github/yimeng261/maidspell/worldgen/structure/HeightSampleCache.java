@@ -0,0 +1,150 @@
+package com.github.yimeng261.maidspell.worldgen.structure;
+
+import com.github.yimeng261.maidspell.MaidSpellMod;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelHeightAccessor;
+import net.minecraft.world.level.chunk.ChunkGenerator;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.levelgen.RandomState;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 区块地面高度采样缓存
+ * 隐世之境的地形检查在每个区块的确定性位置采样地面高度，相邻候选区块的5×5检查窗口大量重叠，
+ * 世界生成、结构有效性预测和寻风之铃结果处理都会重复计算相同的地形噪声，统一从此缓存读取
+ *
+ * 实现方式：
+ * - 按RandomState区分缓存，RandomState由种子和噪声设置唯一确定，换种子或换维度不会读到旧值
+ * - 缓存只弱引用RandomState，世界卸载后RandomState可以被回收；服务器停止时清空所有缓存，释放缓存的高度
+ * - 按打包的区块坐标分段加锁，每段是按访问顺序排列的链式哈希表，超出容量时淘汰最久未访问的区块
+ * - 每个区块的缓存项是一个int数组：前半部分是采样点在区块内的坐标，后半部分是对应的高度，尚未计算的高度为MISSING
+ * - 高度在锁外按需计算，同一采样点可能被多个线程同时计算，结果相同，重复写入无害
+ */
+public final class HeightSampleCache {
+
+    private static final int SAMPLES = HiddenRetreatStructure.SAMPLES_PER_CHUNK;
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_CAPACITY = 2048;
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    // 弱键：缓存本身不强引用RandomState，RandomState被回收后对应的条目随之移除
+    private static final Map<RandomState, HeightSampleCache> CACHES = new WeakHashMap<>();
+
+    // 最近使用的缓存，绝大多数调用只需一次volatile读取
+    private static volatile HeightSampleCache lastUsed;
+
+    private final WeakReference<RandomState> randomState;
+    private final Long2ObjectLinkedOpenHashMap<int[]>[] segments;
+
+    @SuppressWarnings("unchecked")
+    private HeightSampleCache(RandomState randomState) {
+        this.randomState = new WeakReference<>(randomState);
+        this.segments = new Long2ObjectLinkedOpenHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Long2ObjectLinkedOpenHashMap<>(SEGMENT_CAPACITY);
+        }
+    }
+
+    /**
+     * 获取RandomState对应的缓存
+     */
+    public static HeightSampleCache get(RandomState randomState) {
+        HeightSampleCache cache = lastUsed;
+        if (cache != null && cache.randomState.get() == randomState) {
+            return cache;
+        }
+        synchronized (CACHES) {
+            cache = CACHES.computeIfAbsent(randomState, HeightSampleCache::new);
+        }
+        lastUsed = cache;
+        return cache;
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public static void clearAll() {
+        synchronized (CACHES) {
+            CACHES.clear();
+        }
+        lastUsed = null;
+    }
+
+    /**
+     * 获取区块内第index个采样点的地面高度
+     * 采样位置与 RandomSource.create(chunk.toLong()) 依次生成的区块内坐标相同
+     * @param generator 区块生成器
+     * @param heightAccessor 世界高度范围
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @param index 采样点序号，小于 SAMPLES_PER_CHUNK
+     * @return 地面高度
+     */
+    public int sample(ChunkGenerator generator, LevelHeightAccessor heightAccessor, int chunkX, int chunkZ, int index) {
+        int[] entry = entry(ChunkPos.asLong(chunkX, chunkZ));
+        int height = entry[SAMPLES + index];
+        if (height == MISSING) {
+            // 调用方通过 get 取得缓存时持有RandomState，采样期间不会被回收
+            RandomState state = randomState.get();
+            if (state == null) {
+                throw new IllegalStateException("RandomState of height sample cache has been collected");
+            }
+            int local = entry[index];
+            height = generator.getFirstOccupiedHeight(
+                (chunkX << 4) + (local >> 4), (chunkZ << 4) + (local & 15),
+                Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, heightAccessor, state);
+            entry[SAMPLES + index] = height;
+        }
+        return height;
+    }
+
+    private int[] entry(long chunkKey) {
+        Long2ObjectLinkedOpenHashMap<int[]> segment = segments[(int) HashCommon.mix(chunkKey) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            int[] entry = segment.getAndMoveToLast(chunkKey);
+            if (entry == null) {
+                entry = newEntry(chunkKey);
+                segment.putAndMoveToLast(chunkKey, entry);
+                if (segment.size() > SEGMENT_CAPACITY) {
+                    segment.removeFirst();
+                }
+            }
+            return entry;
+        }
+    }
+
+    private static int[] newEntry(long chunkKey) {
+        int[] entry = new int[SAMPLES * 2];
+        // 创建基于区块坐标的确定性随机源，确保采样位置一致
+        RandomSource random = RandomSource.create(chunkKey);
+        for (int i = 0; i < SAMPLES; i++) {
+            int x = random.nextInt(16);
+            int z = random.nextInt(16);
+            entry[i] = (x << 4) | z;
+        }
+        Arrays.fill(entry, SAMPLES, SAMPLES * 2, MISSING);
+        return entry;
+    }
+
+    /**
+     * 服务器停止监听器：清空缓存，集成服务器多次进出世界时不会积累旧世界的缓存
+     */
+    @EventBusSubscriber(modid = MaidSpellMod.MOD_ID)
+    public static class ServerStopHandler {
+
+        @SubscribeEvent
+        public static void onServerStopped(ServerStoppedEvent event) {
+            clearAll();
+        }
+    }
+}
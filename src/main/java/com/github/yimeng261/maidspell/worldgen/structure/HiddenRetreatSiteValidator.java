@@ -0,0 +1,90 @@
+package com.github.yimeng261.maidspell.worldgen.structure;
+
+/**
+ * 隐世之境生成位置检查
+ * 检查以起始区块为中心的5×5区块是否都是樱花林生物群系并且地形足够平坦
+ * 地形数据通过 TerrainSource 读取，世界生成时由生成上下文提供，基准测试中可由合成数据提供
+ *
+ * 分两个阶段：
+ * - 先对所有区块做开销很低的生物群系检查，不需要地形噪声计算
+ * - 全部通过后再逐个采样高度，用Welford算法增量计算方差，一旦方差不可能再满足阈值立即放弃
+ */
+public final class HiddenRetreatSiteValidator {
+
+    private static final int RANGE = HiddenRetreatStructure.CHECK_RANGE;
+    private static final int SAMPLES = HiddenRetreatStructure.SAMPLES_PER_CHUNK;
+    private static final int SIDE = 2 * RANGE + 1;
+
+    // M2（离差平方和）随样本增加单调不减，最终方差至少为 M2 / 总样本数，超过此值时无需继续采样
+    private static final double MAX_M2 = HiddenRetreatStructure.MAX_TERRAIN_VARIANCE * SIDE * SIDE * SAMPLES;
+
+    /**
+     * 地形数据来源
+     */
+    public interface TerrainSource {
+        /**
+         * 区块中心（海平面高度）是否为樱花林生物群系
+         */
+        boolean isCherryGrove(int chunkX, int chunkZ);
+
+        /**
+         * 区块内第index个采样点的地面高度
+         */
+        int sampleHeight(int chunkX, int chunkZ, int index);
+    }
+
+    /**
+     * 生成位置的检查结果
+     * 结构实例是注册表单例，被所有世界生成线程共享，检查结果随调用返回而不保存在实例上
+     * @param valid 是否可以生成
+     * @param height 结构的放置高度（采样点的平均地面高度），仅在valid为true时有意义
+     */
+    public record SiteCheck(boolean valid, int height) {
+        public static final SiteCheck INVALID = new SiteCheck(false, 0);
+    }
+
+    private HiddenRetreatSiteValidator() {
+    }
+
+    /**
+     * 检查生成位置
+     * @param terrain 地形数据来源
+     * @param centerChunkX 起始区块X坐标
+     * @param centerChunkZ 起始区块Z坐标
+     * @return 检查结果，所有区块都是樱花林且地形平坦时有效，并带有结构的放置高度
+     */
+    public static SiteCheck check(TerrainSource terrain, int centerChunkX, int centerChunkZ) {
+        // 1. 检查生物群系
+        for (int dx = -RANGE; dx <= RANGE; dx++) {
+            for (int dz = -RANGE; dz <= RANGE; dz++) {
+                if (!terrain.isCherryGrove(centerChunkX + dx, centerChunkZ + dz)) {
+                    return SiteCheck.INVALID;
+                }
+            }
+        }
+
+        // 2. 采样高度并检查地形平坦度
+        int count = 0;
+        long sum = 0;
+        double mean = 0;
+        double m2 = 0;
+        for (int dx = -RANGE; dx <= RANGE; dx++) {
+            for (int dz = -RANGE; dz <= RANGE; dz++) {
+                for (int i = 0; i < SAMPLES; i++) {
+                    // 逐个采样，放弃时不再计算剩余样本的地形噪声
+                    int height = terrain.sampleHeight(centerChunkX + dx, centerChunkZ + dz, i);
+                    count++;
+                    sum += height;
+                    double delta = height - mean;
+                    mean += delta / count;
+                    m2 += delta * (height - mean);
+                    if (m2 > MAX_M2) {
+                        return SiteCheck.INVALID;
+                    }
+                }
+            }
+        }
+
+        return new SiteCheck(true, (int) ((double) sum / count));
+    }
+}
@@ -6,11 +6,12 @@ import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
-import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LevelHeightAccessor;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.biome.Biomes;
-import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.chunk.ChunkGenerator;
+import net.minecraft.world.level.levelgen.RandomState;
 import net.minecraft.world.level.levelgen.structure.Structure;
 import net.minecraft.world.level.levelgen.structure.StructureType;
 import net.minecraft.world.level.levelgen.structure.pools.DimensionPadding;
@@ -19,8 +20,6 @@ import net.minecraft.world.level.levelgen.structure.pools.StructureTemplatePool;
 import net.minecraft.world.level.levelgen.structure.pools.alias.PoolAliasLookup;
 import net.minecraft.world.level.levelgen.structure.templatesystem.LiquidSettings;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 public class HiddenRetreatStructure extends Structure {
@@ -32,12 +31,13 @@ public class HiddenRetreatStructure extends Structure {
 
     private final Holder<StructureTemplatePool> startPool;
     private final int size;
-    private int height;
 
     // 地形平坦度检测的最大方差阈值（单位：方块高度的平方）
-    private static final double MAX_TERRAIN_VARIANCE = 16.0; // 相当于标准差约4个方块
+    public static final double MAX_TERRAIN_VARIANCE = 16.0; // 相当于标准差约4个方块
     // 每个区块的采样点数量
-    private static final int SAMPLES_PER_CHUNK = 5;
+    public static final int SAMPLES_PER_CHUNK = 5;
+    // 以中心区块为中心的检查半径（区块）
+    public static final int CHECK_RANGE = 2;
 
     public HiddenRetreatStructure(StructureSettings settings, Holder<StructureTemplatePool> startPool, int size) {
         super(settings);
@@ -51,11 +51,12 @@ public class HiddenRetreatStructure extends Structure {
         BlockPos centerPos = new BlockPos(chunkPos.getMinBlockX() + 8, 0, chunkPos.getMinBlockZ() + 8);
 
         // 检查以当前区块为中心的3*3区块是否都是樱花林并且地形足够平坦
-        if (!isValidGenerationLocation(context, chunkPos)) {
+        HiddenRetreatSiteValidator.SiteCheck site = isValidGenerationLocation(context, chunkPos);
+        if (!site.valid()) {
             return Optional.empty();
         }
 
-        BlockPos structurePos = new BlockPos(centerPos.getX(), this.height, centerPos.getZ()); // 向上偏移1格
+        BlockPos structurePos = new BlockPos(centerPos.getX(), site.height(), centerPos.getZ()); // 向上偏移1格
 
         return JigsawPlacement.addPieces(
                 context,
@@ -79,105 +80,55 @@ public class HiddenRetreatStructure extends Structure {
     }
 
     /**
-     * 检查以给定区块为中心的3*3区块是否都是樱花林生物群系并且地形足够平坦
+     * 检查以给定区块为中心的5*5区块是否都是樱花林生物群系并且地形足够平坦
      * @param context 生成上下文
      * @param centerChunk 中心区块位置
-     * @return 如果所有区块都是樱花林且地形平坦则返回true，否则返回false
+     * @return 检查结果，所有区块都是樱花林且地形平坦时有效，并带有结构的放置高度
      */
-    private boolean isValidGenerationLocation(GenerationContext context, ChunkPos centerChunk) {
-        List<Integer> heightSamples = new ArrayList<>();
-        int range = 2;
-
-        // 检查以centerChunk为中心的3*3区块范围
-        for (int dx = -range; dx <= range; dx++) {
-            for (int dz = -range; dz <= range; dz++) {
-                ChunkPos checkChunk = new ChunkPos(centerChunk.x + dx, centerChunk.z + dz);
-
-                // 1. 检查生物群系
-                int x = checkChunk.getMinBlockX() + 8;
-                int z = checkChunk.getMinBlockZ() + 8;
-                int y = context.chunkGenerator().getSeaLevel();
-
+    private HiddenRetreatSiteValidator.SiteCheck isValidGenerationLocation(GenerationContext context, ChunkPos centerChunk) {
+        int y = context.chunkGenerator().getSeaLevel();
+        // 相邻候选区块的检查窗口大量重叠，采样高度从共享缓存读取
+        HeightSampleCache heightCache = HeightSampleCache.get(context.randomState());
+
+        return HiddenRetreatSiteValidator.check(new HiddenRetreatSiteValidator.TerrainSource() {
+            @Override
+            public boolean isCherryGrove(int chunkX, int chunkZ) {
+                int x = (chunkX << 4) + 8;
+                int z = (chunkZ << 4) + 8;
                 Holder<Biome> biome = context.biomeSource().getNoiseBiome(
                         x >> 2, y >> 2, z >> 2, context.randomState().sampler()
                 );
-
-                // 如果不是樱花林生物群系，返回false
-                if (!biome.is(Biomes.CHERRY_GROVE)) {
-                    return false;
-                }
-
-                // 2. 收集高度样本用于地形平坦度检测
-                List<Integer> chunkHeightSamples = sampleChunkHeights(context, checkChunk);
-                heightSamples.addAll(chunkHeightSamples);
+                return biome.is(Biomes.CHERRY_GROVE);
             }
-        }
-
-        // 3. 检查地形平坦度
-        return isTerrainFlat(heightSamples);
-    }
-
-    /**
-     * 在指定区块内随机采样高度
-     * @param context 生成上下文
-     * @param chunk 目标区块
-     * @return 采样点的高度列表
-     */
-    private List<Integer> sampleChunkHeights(GenerationContext context, ChunkPos chunk) {
-        List<Integer> heights = new ArrayList<>();
 
-        // 创建基于区块坐标的确定性随机源，确保结果一致
-        RandomSource random = RandomSource.create(chunk.toLong());
-
-        int minX = chunk.getMinBlockX();
-        int minZ = chunk.getMinBlockZ();
-
-        for (int i = 0; i < SAMPLES_PER_CHUNK; i++) {
-            // 在区块内随机选择一个位置
-            int x = minX + random.nextInt(16);
-            int z = minZ + random.nextInt(16);
-
-            // 获取该位置的地面高度
-            int height = context.chunkGenerator().getFirstOccupiedHeight(
-                    x, z,
-                    Heightmap.Types.MOTION_BLOCKING_NO_LEAVES,
-                    context.heightAccessor(),
-                    context.randomState()
-            );
-
-            heights.add(height);
-        }
-
-        return heights;
+            @Override
+            public int sampleHeight(int chunkX, int chunkZ, int index) {
+                return heightCache.sample(context.chunkGenerator(), context.heightAccessor(), chunkX, chunkZ, index);
+            }
+        }, centerChunk.x, centerChunk.z);
     }
 
     /**
-     * 检查地形是否足够平坦
-     * @param heights 所有采样点的高度
-     * @return 如果地形平坦度符合要求则返回true
+     * 估算隐世之境在给定起始区块的放置高度，与 findGenerationPoint 选定的高度相同
+     * @param generator 区块生成器
+     * @param heightAccessor 世界高度范围
+     * @param randomState 世界的随机状态
+     * @param centerChunk 结构的起始区块
+     * @return 检查窗口内所有采样点的平均地面高度
      */
-    private boolean isTerrainFlat(List<Integer> heights) {
-        if (heights.size() < 2) {
-            return true; // 样本过少，认为是平坦的
-        }
-
-        // 计算平均高度
-        double sum = 0;
-        for (int height : heights) {
-            sum += height;
-        }
-        double mean = sum / heights.size();
-        this.height = (int) mean;
-
-        // 计算方差
-        double varianceSum = 0;
-        for (int height : heights) {
-            double diff = height - mean;
-            varianceSum += diff * diff;
+    public static int estimatePlacementHeight(ChunkGenerator generator, LevelHeightAccessor heightAccessor,
+                                              RandomState randomState, ChunkPos centerChunk) {
+        HeightSampleCache heightCache = HeightSampleCache.get(randomState);
+        long sum = 0;
+        int count = 0;
+        for (int dx = -CHECK_RANGE; dx <= CHECK_RANGE; dx++) {
+            for (int dz = -CHECK_RANGE; dz <= CHECK_RANGE; dz++) {
+                for (int i = 0; i < SAMPLES_PER_CHUNK; i++) {
+                    sum += heightCache.sample(generator, heightAccessor, centerChunk.x + dx, centerChunk.z + dz, i);
+                    count++;
+                }
+            }
         }
-        double variance = varianceSum / heights.size();
-
-        // 检查方差是否在可接受范围内
-        return variance <= MAX_TERRAIN_VARIANCE;
+        return (int) ((double) sum / count);
     }
 }